@@ -15,11 +15,22 @@
 
 package com.vladsch.plugin.test.util;
 
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.testFramework.fixtures.CodeInsightTestFixture;
+import com.intellij.testFramework.fixtures.TempDirTestFixture;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
 import com.vladsch.flexmark.test.util.spec.ResourceLocation;
 import com.vladsch.flexmark.util.misc.Utils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class AdditionalProjectFiles {
     final private @NotNull HashMap<String, Object> myFiles = new HashMap<>();
@@ -37,13 +48,30 @@ public class AdditionalProjectFiles {
         return Utils.endsWith(filePath, true, ".png", ".jpg", ".jpeg", ".gif", ".svg");
     }
 
+    public boolean isBinaryExt(@NotNull String filePath) {
+        return isImageExt(filePath) || Utils.endsWith(filePath, true, ".ico", ".bmp", ".webp", ".pdf", ".jar", ".zip", ".gz", ".tgz", ".tar", ".class");
+    }
+
+    /**
+     * Add resource as binary file regardless of its extension
+     *
+     * @param resourceLocation resource location, file is created at its resource path
+     *
+     * @return this
+     */
+    public AdditionalProjectFiles addBinary(@NotNull ResourceLocation resourceLocation) {
+        myFiles.put(resourceLocation.getResourcePath(), resourceLocation);
+        return this;
+    }
+
     public AdditionalProjectFiles add(@NotNull ResourceLocation resourceLocation, @NotNull String relativePath) {
         Object fileText;
-        if (isImageExt(resourceLocation.getResourcePath())) {
-            // this is an image, text will be null
+        if (isBinaryExt(resourceLocation.getResourcePath())) {
+            // this is an image or binary file, text will be null
             fileText = resourceLocation;
         } else {
-            fileText = resourceLocation.getResourceText();
+            // NOTE: loaded when the file is created, shared by all examples using the resource
+            fileText = new ResourceText(resourceLocation);
         }
 
         String path = relativePath.isEmpty() ? resourceLocation.getResourcePath() : relativePath;
@@ -51,8 +79,72 @@ public class AdditionalProjectFiles {
         return this;
     }
 
+    /**
+     * Map of relative path to file content
+     * <p>
+     * Values are {@link String} or {@link ResourceText} for text files and {@link ResourceLocation} for image and binary
+     * files, binary files are streamed from {@link BinaryAssets}
+     *
+     * @return files
+     */
     @NotNull
     public HashMap<String, Object> getFiles() {
         return myFiles;
     }
+
+    /**
+     * Get text of a file value
+     *
+     * @param value value from {@link #getFiles()}
+     *
+     * @return text or null if value is not a text file
+     */
+    @Nullable
+    public static String getText(@Nullable Object value) {
+        if (value instanceof String) return (String) value;
+        if (value instanceof ResourceText) return ((ResourceText) value).getText();
+        return null;
+    }
+
+    /**
+     * Create files in the fixture temp dir in one write command action, then commit documents and bring indexes up
+     * to date once for all files
+     *
+     * @param fixture code insight fixture
+     * @param files   map of relative path to file text or resource location, resource files are created at their
+     *                resource path
+     *
+     * @return map of relative path to created virtual file, in order of files
+     */
+    @NotNull
+    public static Map<String, VirtualFile> createFiles(@NotNull CodeInsightTestFixture fixture, @NotNull Map<String, Object> files) {
+        LinkedHashMap<String, VirtualFile> created = new LinkedHashMap<>();
+        if (files.isEmpty()) return created;
+
+        Project project = fixture.getProject();
+        TempDirTestFixture tempDirFixture = fixture.getTempDirFixture();
+
+        WriteCommandAction.runWriteCommandAction(project, () -> {
+            for (Map.Entry<String, Object> entry : files.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof ResourceLocation) {
+                    ResourceLocation resourceLocation = (ResourceLocation) value;
+                    VirtualFile virtualFile = tempDirFixture.createFile(resourceLocation.getResourcePath());
+                    try {
+                        BinaryAssets.copyTo(resourceLocation, virtualFile, fixture);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Cannot create additional file " + resourceLocation.getResourcePath(), e);
+                    }
+                    created.put(entry.getKey(), virtualFile);
+                } else {
+                    String text = getText(value);
+                    if (text != null) created.put(entry.getKey(), tempDirFixture.createFile(entry.getKey(), text));
+                }
+            }
+        });
+
+        PsiDocumentManager.getInstance(project).commitAllDocuments();
+        CodeInsightTestFixtureImpl.ensureIndexesUpToDate(project);
+        return created;
+    }
 }
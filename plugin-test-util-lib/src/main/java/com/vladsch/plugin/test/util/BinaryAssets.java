@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM wide registry of binary test assets materialized as local files
+ * <p>
+ * Resources which are local files are used in place, others, such as resources in jars, are extracted once to
+ * build/plugin-test-util/assets. Extraction writes a temp file which is atomically moved into place, so concurrent test
+ * forks never see a partial asset. Asset content is hashed while it is streamed, virtual files are written by streaming
+ * from the local file into {@link VirtualFile#getOutputStream(Object)}.
+ * <p>
+ * NOTE: streaming only avoids intermediate copies, the light fixture temp dir is an in-memory file system which keeps
+ * the content of created files on the heap until they are deleted.
+ */
+public final class BinaryAssets {
+    private static final ConcurrentHashMap<String, Asset> ourAssets = new ConcurrentHashMap<>();
+
+    public static final class Asset {
+        final public @NotNull File file;
+        final public @NotNull String hash;
+        final public long length;
+        final public long lastModified;
+
+        Asset(@NotNull File file, @NotNull String hash) {
+            this.file = file;
+            this.hash = hash;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        boolean isValid() {
+            return file.isFile() && file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+
+    private BinaryAssets() {
+    }
+
+    /**
+     * Get materialized asset for a resource
+     *
+     * @param location resource location
+     *
+     * @return asset
+     */
+    @NotNull
+    public static Asset getAsset(@NotNull ResourceLocation location) {
+        String url = ResourceContentCache.getUrl(location);
+        // NOTE: materialized at most once per url, concurrent callers wait for it
+        return ourAssets.compute(url, (key, asset) -> asset != null && asset.isValid() ? asset : materialize(location, key));
+    }
+
+    /**
+     * Stream asset content into a virtual file, must be called in a write action
+     *
+     * @param location    resource location
+     * @param virtualFile virtual file
+     * @param requestor   requestor for the file change
+     *
+     * @throws IOException if reading or writing fails
+     */
+    public static void copyTo(@NotNull ResourceLocation location, @NotNull VirtualFile virtualFile, @Nullable Object requestor) throws IOException {
+        Asset asset = getAsset(location);
+        try (InputStream inputStream = new FileInputStream(asset.file);
+             OutputStream outputStream = virtualFile.getOutputStream(requestor)) {
+            IOUtils.copyLarge(inputStream, outputStream);
+        }
+    }
+
+    @NotNull
+    static Asset materialize(@NotNull ResourceLocation location, @NotNull String url) {
+        try {
+            File file = getLocalFile(location);
+            if (file == null) {
+                // NOTE: url is unique per resource, file name is kept for readability
+                String name = ContentHash.of(url).substring(0, 12) + "_" + SpecTestProperties.toFileName(new File(location.getResourcePath()).getName());
+                file = new File(SpecTestProperties.getBuildDir("assets"), name);
+
+                // NOTE: write to temp file and move so concurrent test forks never see a partial asset
+                File tmpFile = File.createTempFile(name, ".tmp", file.getParentFile());
+                try {
+                    try (InputStream inputStream = location.getResourceInputStream();
+                         OutputStream outputStream = new FileOutputStream(tmpFile)) {
+                        IOUtils.copyLarge(inputStream, outputStream);
+                    }
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(tmpFile.toPath());
+                }
+            }
+
+            try (InputStream inputStream = new FileInputStream(file)) {
+                return new Asset(file, new ContentHash().add(inputStream).toHex());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot materialize binary asset " + location.getResourcePath(), e);
+        }
+    }
+
+    @Nullable
+    static File getLocalFile(@NotNull ResourceLocation location) {
+        URL url = location.getResourceClass().getResource(location.getResourcePath());
+        if (url == null || !"file".equals(url.getProtocol())) return null;
+
+        try {
+            File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+import com.vladsch.flexmark.util.data.DataHolder;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Project pool of modified code style settings clones used in copy-on-write mode
+ * <p>
+ * Examples without {@link SpecTestSetup#CODE_STYLE_SETTINGS} operations use the main project settings and need no
+ * clone. Otherwise one clone of the main project settings is made per distinct list of settings operations and
+ * reused by all examples with the same operations. The main project settings are never modified so nothing needs to
+ * be restored after an example, other than dropping the temporary settings.
+ * <p>
+ * NOTE: pooled clones are shared, examples must change code style settings only through
+ * {@link SpecTestSetup#CODE_STYLE_SETTINGS} options. With -Dplugin.test.util.code-style-check=true the renderer
+ * compares the serialized state of the settings used by an example before and after it, see {@link #checkUnchanged},
+ * and fails the example if they were modified. The check is off by default since serializing settings twice costs
+ * more than the clone which copy-on-write avoids.
+ */
+public final class CodeStyleSettingsPool {
+    private static final Key<CodeStyleSettingsPool> POOL_KEY = Key.create("plugin.test.util.CodeStyleSettingsPool");
+    private static final int MAX_POOLED = 64;
+
+    private final @NotNull CodeStyleSettings myMainSettings;
+    private final @NotNull HashMap<List<Consumer<CodeStyleSettings>>, CodeStyleSettings> myClones = new HashMap<>();
+
+    private CodeStyleSettingsPool(@NotNull CodeStyleSettings mainSettings) {
+        myMainSettings = mainSettings;
+    }
+
+    /**
+     * Get code style settings to use as temporary settings for options
+     *
+     * @param project project
+     * @param options example options
+     *
+     * @return modified clone of main project settings or null if options have no code style settings operations
+     */
+    @Nullable
+    public static CodeStyleSettings getSettings(@NotNull Project project, @NotNull DataHolder options) {
+        List<Consumer<CodeStyleSettings>> operations = SpecTestSetup.getSettingsOperations(SpecTestSetup.CODE_STYLE_SETTINGS, options);
+        if (operations.isEmpty()) return null;
+
+        CodeStyleSettings mainSettings = CodeStyleSettingsManager.getInstance(project).getMainProjectCodeStyle();
+        assert mainSettings != null;
+
+        CodeStyleSettingsPool pool = project.getUserData(POOL_KEY);
+        if (pool == null || pool.myMainSettings != mainSettings) {
+            pool = new CodeStyleSettingsPool(mainSettings);
+            project.putUserData(POOL_KEY, pool);
+        }
+
+        return pool.getClone(operations);
+    }
+
+    /**
+     * Discard pooled clones of the project, needed if main project code style settings are modified
+     *
+     * @param project project
+     */
+    public static void clear(@NotNull Project project) {
+        project.putUserData(POOL_KEY, null);
+    }
+
+    /**
+     * Get serialized state of code style settings, only settings which differ from defaults are written
+     *
+     * @param settings code style settings
+     *
+     * @return serialized state
+     */
+    @NotNull
+    public static String getState(@NotNull CodeStyleSettings settings) {
+        Element element = new Element("code_scheme");
+        settings.writeExternal(element);
+        return JDOMUtil.write(element);
+    }
+
+    /**
+     * Check that shared settings used by an example were not modified by it. Modified pooled clone is discarded,
+     * modification of main project settings discards all pooled clones since they are based on it.
+     *
+     * @param project     project
+     * @param settings    pooled clone or main project settings used by the example
+     * @param state       state of settings from {@link #getState(CodeStyleSettings)} before the example
+     * @param exampleName example name for the error message
+     *
+     * @throws IllegalStateException if settings were modified
+     */
+    public static void checkUnchanged(@NotNull Project project, @NotNull CodeStyleSettings settings, @NotNull String state, @NotNull String exampleName) {
+        if (getState(settings).equals(state)) return;
+
+        boolean isMain = settings == CodeStyleSettingsManager.getInstance(project).getMainProjectCodeStyle();
+        CodeStyleSettingsPool pool = project.getUserData(POOL_KEY);
+        if (isMain) clear(project);
+        else if (pool != null) pool.myClones.values().remove(settings);
+
+        throw new IllegalStateException(String.format("%s modified %s code style settings with CODE_STYLE_COPY_ON_WRITE, " +
+                "use SpecTestSetup.CODE_STYLE_SETTINGS options or disable CODE_STYLE_COPY_ON_WRITE", exampleName, isMain ? "main project" : "shared pooled"));
+    }
+
+    @NotNull
+    private CodeStyleSettings getClone(@NotNull List<Consumer<CodeStyleSettings>> operations) {
+        // NOTE: operations lists are immutable, equal lists apply the same consumer instances in the same order
+        CodeStyleSettings settings = myClones.get(operations);
+        if (settings == null) {
+            if (myClones.size() >= MAX_POOLED) myClones.clear();
+
+            settings = myMainSettings.clone();
+            for (Consumer<CodeStyleSettings> operation : operations) {
+                operation.accept(settings);
+            }
+            myClones.put(operations, settings);
+        }
+        return settings;
+    }
+}
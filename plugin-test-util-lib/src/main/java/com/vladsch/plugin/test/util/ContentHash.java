@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-1 content hash used as key for caches, null values and strings are distinguished
+ */
+public final class ContentHash {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest myDigest;
+
+    public ContentHash() {
+        try {
+            myDigest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 message digest not available", e);
+        }
+    }
+
+    public ContentHash add(@Nullable CharSequence text) {
+        if (text == null) {
+            myDigest.update((byte) 0);
+        } else {
+            myDigest.update((byte) 1);
+            add(text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return this;
+    }
+
+    public ContentHash add(@NotNull byte[] bytes) {
+        add(bytes.length);
+        myDigest.update(bytes);
+        return this;
+    }
+
+    /**
+     * Add content of a stream, read in chunks
+     *
+     * @param inputStream input stream, not closed
+     *
+     * @return this
+     *
+     * @throws IOException if reading fails
+     */
+    public ContentHash add(@NotNull InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long length = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            myDigest.update(buffer, 0, read);
+            length += read;
+        }
+        return add(length);
+    }
+
+    public ContentHash add(long value) {
+        for (int i = 0; i < 8; i++) {
+            myDigest.update((byte) (value >>> (i * 8)));
+        }
+        return this;
+    }
+
+    public ContentHash add(boolean value) {
+        myDigest.update((byte) (value ? 1 : 0));
+        return this;
+    }
+
+    @NotNull
+    public String toHex() {
+        byte[] bytes = myDigest.digest();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    @NotNull
+    public static String of(@Nullable CharSequence text) {
+        return new ContentHash().add(text).toHex();
+    }
+
+    @NotNull
+    public static String of(@NotNull byte[] bytes) {
+        return new ContentHash().add(bytes).toHex();
+    }
+}
@@ -73,4 +73,28 @@ public final class DebugLogSettings {
     public HashMap<String, DebugLogManager.DebugLogLevel> getOptions() {
         return myOptions;
     }
+
+    /**
+     * Get categories which are not in other categories with the same level
+     *
+     * @param categories categories
+     * @param other      other categories
+     *
+     * @return categories which differ
+     */
+    @NotNull
+    public static List<DebugLogManager.Category> difference(@NotNull List<DebugLogManager.Category> categories, @NotNull List<DebugLogManager.Category> other) {
+        HashMap<String, DebugLogManager.DebugLogLevel> otherLevels = new HashMap<>();
+        for (DebugLogManager.Category category : other) {
+            otherLevels.put(category.getCategory(), category.getLevel());
+        }
+
+        List<DebugLogManager.Category> difference = new ArrayList<>();
+        for (DebugLogManager.Category category : categories) {
+            if (otherLevels.get(category.getCategory()) != category.getLevel()) {
+                difference.add(category);
+            }
+        }
+        return difference;
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.vladsch.flexmark.test.util.DumpSpecReader;
+import com.vladsch.flexmark.test.util.TestUtils;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import com.vladsch.plugin.test.util.cases.CodeInsightFixtureSpecTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Full spec reader which uses results of already run examples instead of running them again
+ * <p>
+ * In streaming mode the actual and expected full spec text is written to files as it is produced and compared
+ * one example at a time, only the differing example windows are kept in memory.
+ */
+public class FullSpecReader extends DumpSpecReader {
+    protected final @NotNull CodeInsightFixtureSpecTestCase mySpecTest;
+    protected final @Nullable SpecExampleResults myResults;
+    private int myReusedCount;
+    private int myRunCount;
+
+    // streaming mode
+    private @Nullable File myActualFile;
+    private @Nullable File myExpectedFile;
+    private @Nullable FullSpecWriter myWriter;
+    private int myDiffCount;
+    private @NotNull String myExpectedWindows = "";
+    private @NotNull String myActualWindows = "";
+
+    public FullSpecReader(@NotNull InputStream stream, @NotNull CodeInsightFixtureSpecTestCase specTest, @NotNull String fileUrl, @Nullable SpecExampleResults results) {
+        super(stream, specTest, fileUrl, true);
+        mySpecTest = specTest;
+        myResults = results;
+    }
+
+    public static boolean isStreamingEnabled() {
+        return SpecTestProperties.getBoolean(SpecTestProperties.FULL_SPEC_STREAMING, false);
+    }
+
+    public int getReusedCount() {
+        return myReusedCount;
+    }
+
+    public int getRunCount() {
+        return myRunCount;
+    }
+
+    public boolean isStreaming() {
+        return myWriter != null;
+    }
+
+    /**
+     * Start streaming mode, must be called before {@link #readExamples()}
+     *
+     * @param baseName base name for the full spec files in build/plugin-test-util/full-spec
+     */
+    public void startStreaming(@NotNull String baseName) {
+        File dir = SpecTestProperties.getBuildDir("full-spec");
+        myActualFile = new File(dir, SpecTestProperties.toFileName(baseName) + ".actual.md");
+        myExpectedFile = new File(dir, SpecTestProperties.toFileName(baseName) + ".expected.md");
+
+        Writer actualWriter = null;
+        try {
+            actualWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(myActualFile), StandardCharsets.UTF_8));
+            Writer expectedWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(myExpectedFile), StandardCharsets.UTF_8));
+            myWriter = new FullSpecWriter(actualWriter, expectedWriter, myActualFile.getPath(), SpecTestProperties.getInt(SpecTestProperties.FULL_SPEC_MAX_WINDOWS, 10));
+        } catch (IOException e) {
+            closeQuietly(actualWriter);
+            throw new UncheckedIOException("Cannot create full spec output file in " + dir, e);
+        }
+    }
+
+    /**
+     * Complete streaming mode, must be called after {@link #readExamples()}
+     *
+     * @throws RuntimeException if writing the full spec files fails
+     */
+    public void finishStreaming() {
+        FullSpecWriter writer = myWriter;
+        if (writer == null) return;
+
+        try {
+            flushChunk(null);
+            writer.finish();
+        } finally {
+            writer.close();
+            myWriter = null;
+            myDiffCount = writer.getDiffCount();
+            myExpectedWindows = writer.getExpectedWindows();
+            myActualWindows = writer.getActualWindows();
+        }
+    }
+
+    /**
+     * Stop streaming mode without completing it, used when examples did not complete. Output files are closed quietly.
+     * Does nothing if streaming is not active.
+     */
+    public void closeStreaming() {
+        FullSpecWriter writer = myWriter;
+        if (writer == null) return;
+
+        myWriter = null;
+        writer.close();
+    }
+
+    static void closeQuietly(@Nullable Writer writer) {
+        if (writer == null) return;
+
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Nullable
+    public File getActualFile() {
+        return myActualFile;
+    }
+
+    @Nullable
+    public File getExpectedFile() {
+        return myExpectedFile;
+    }
+
+    /**
+     * @return number of differing chunks in streaming mode
+     */
+    public int getDiffCount() {
+        return myDiffCount;
+    }
+
+    /**
+     * @return expected text of differing example windows in streaming mode
+     */
+    @NotNull
+    public String getExpectedWindows() {
+        return myExpectedWindows;
+    }
+
+    /**
+     * @return actual text of differing example windows in streaming mode
+     */
+    @NotNull
+    public String getActualWindows() {
+        return myActualWindows;
+    }
+
+    @Override
+    public void addSpecExample(SpecExample example) {
+        // spec text between examples
+        if (isStreaming()) flushChunk(null);
+
+        SpecExampleResult result = myResults == null ? null : myResults.get(example);
+
+        if (result == null) {
+            myRunCount++;
+            super.addSpecExample(example);
+        } else {
+            myReusedCount++;
+            mySpecTest.addFullSpecExampleResult(example, result);
+
+            // NOTE: EMBED_TIMED timings are shown in both so they do not cause a difference
+            if (!result.getTimings().isEmpty()) {
+                StringBuilder timings = new StringBuilder();
+                CodeInsightFixtureSpecTestCase.appendBanner(timings, CodeInsightFixtureSpecTestCase.BANNER_TIMING);
+                timings.append(result.getTimings()).append("\n");
+                sb.append(timings);
+                sbExp.append(timings);
+            }
+
+            // NOTE: result source has NO_FILE_EOL applied, use it for both so only html and ast are compared
+            String source = result.getSource();
+            TestUtils.addSpecExample(true, sb, source, result.getHtml(), result.getAst(), example.getOptionsSet(), true, example.getSection(), example.getExampleNumber());
+            TestUtils.addSpecExample(true, sbExp, source, example.getHtml(), example.getAst(), example.getOptionsSet(), true, example.getSection(), example.getExampleNumber());
+        }
+
+        if (isStreaming()) flushChunk(example);
+    }
+
+    void flushChunk(@Nullable SpecExample example) {
+        assert myWriter != null;
+
+        myWriter.write(example, sb, sbExp);
+        sb.setLength(0);
+        sbExp.setLength(0);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import com.vladsch.plugin.test.util.cases.CodeInsightFixtureSpecTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writer of streaming full spec chunks used by {@link FullSpecReader}
+ * <p>
+ * Each chunk of actual and expected text is appended to its writer and compared, only differing chunks are kept in
+ * memory.
+ */
+class FullSpecWriter {
+    private final @NotNull Writer myActualWriter;
+    private final @NotNull Writer myExpectedWriter;
+    private final @NotNull String myActualName;
+    private final int myMaxWindows;
+    private int myDiffCount;
+    private final StringBuilder myExpectedWindows = new StringBuilder();
+    private final StringBuilder myActualWindows = new StringBuilder();
+
+    /**
+     * @param actualWriter   writer of actual full spec
+     * @param expectedWriter writer of expected full spec
+     * @param actualName     name of actual full spec output used in error messages
+     * @param maxWindows     maximum number of differing chunks kept
+     */
+    FullSpecWriter(@NotNull Writer actualWriter, @NotNull Writer expectedWriter, @NotNull String actualName, int maxWindows) {
+        myActualWriter = actualWriter;
+        myExpectedWriter = expectedWriter;
+        myActualName = actualName;
+        myMaxWindows = maxWindows;
+    }
+
+    /**
+     * Write and compare a chunk
+     *
+     * @param example  example of the chunk or null for spec text between examples
+     * @param actual   actual text, not retained after the call
+     * @param expected expected text, not retained after the call
+     */
+    void write(@Nullable SpecExample example, @NotNull CharSequence actual, @NotNull CharSequence expected) {
+        try {
+            myActualWriter.append(actual);
+            myExpectedWriter.append(expected);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write full spec output file " + myActualName, e);
+        }
+
+        if (!contentEquals(actual, expected)) {
+            if (myDiffCount < myMaxWindows) {
+                String header = "<!-- " + (example == null ? "spec text" : CodeInsightFixtureSpecTestCase.getExampleName(example) + " " + example.getFileUrlWithLineNumber()) + " -->\n";
+                myExpectedWindows.append(header).append(expected);
+                myActualWindows.append(header).append(actual);
+            }
+            myDiffCount++;
+        }
+    }
+
+    /**
+     * Close the writers
+     *
+     * @throws UncheckedIOException if closing the writers fails
+     */
+    void finish() {
+        try {
+            myActualWriter.close();
+            myExpectedWriter.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write full spec output file " + myActualName, e);
+        } finally {
+            FullSpecReader.closeQuietly(myExpectedWriter);
+        }
+    }
+
+    /**
+     * Stop without completing, writers are closed quietly
+     */
+    void close() {
+        FullSpecReader.closeQuietly(myActualWriter);
+        FullSpecReader.closeQuietly(myExpectedWriter);
+    }
+
+    int getDiffCount() {
+        return myDiffCount;
+    }
+
+    @NotNull
+    String getExpectedWindows() {
+        return myExpectedWindows.toString();
+    }
+
+    @NotNull
+    String getActualWindows() {
+        return myActualWindows.toString();
+    }
+
+    static boolean contentEquals(@NotNull CharSequence s1, @NotNull CharSequence s2) {
+        int iMax = s1.length();
+        if (iMax != s2.length()) return false;
+
+        for (int i = 0; i < iMax; i++) {
+            if (s1.charAt(i) != s2.charAt(i)) return false;
+        }
+        return true;
+    }
+}
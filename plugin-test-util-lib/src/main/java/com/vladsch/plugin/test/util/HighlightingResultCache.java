@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.codeInspection.ex.ScopeToolState;
+import com.intellij.codeInspection.ex.Tools;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+import com.vladsch.plugin.util.TestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JVM wide least recently used cache of highlighting snapshots of test classes with {@link com.vladsch.plugin.test.util.cases.SpecTest#HIGHLIGHTING_CACHE}
+ * <p>
+ * Results are snapshots of highlight infos and line marker text, keyed by file name, document text without expected
+ * highlighting markup, enabled inspections with their scope levels and enabled state, intention options, line marker
+ * settings, code style settings hash and additional project files. Expected highlighting is checked against the
+ * snapshot so examples with the same text which check different highlighting share a result. An example with a cached
+ * result does not run the daemon.
+ * <p>
+ * Number of cached results is limited by -Dplugin.test.util.highlighting-cache-size, default 1024
+ */
+public final class HighlightingResultCache {
+    private static final Logger LOG = Logger.getInstance(HighlightingResultCache.class);
+
+    private static final LinkedHashMap<String, HighlightingSnapshot> ourResults = new LinkedHashMap<>(16, 0.75f, true);
+
+    static class CodeStyleHash {
+        final @NotNull WeakReference<CodeStyleSettings> settings;
+        final @NotNull String hash;
+
+        CodeStyleHash(@NotNull CodeStyleSettings settings, @NotNull String hash) {
+            this.settings = new WeakReference<>(settings);
+            this.hash = hash;
+        }
+    }
+
+    // NOTE: settings are not modified once used for highlighting, so the hash is computed once per settings instance,
+    //  instances are compared by identity since settings equality compares all settings
+    private static final int MAX_CODE_STYLE_HASHES = 64;
+    private static final ArrayList<CodeStyleHash> ourCodeStyleHashes = new ArrayList<>();
+
+    private HighlightingResultCache() {
+    }
+
+    /**
+     * Get cache key of highlighting for the current state of the project
+     *
+     * @param file            file being highlighted
+     * @param text            document text, without expected highlighting markup
+     * @param additionalFiles additional project files of the example
+     *
+     * @return key
+     */
+    @NotNull
+    public static String getKey(@NotNull PsiFile file, @NotNull CharSequence text, @NotNull Map<String, Object> additionalFiles) {
+        Project project = file.getProject();
+        ContentHash hash = new ContentHash()
+                .add(file.getName())
+                .add(text);
+
+        List<String> inspections = new ArrayList<>();
+        for (Tools tools : InspectionProjectProfileManager.getInstance(project).getCurrentProfile().getAllEnabledInspectionTools(project)) {
+            StringBuilder sb = new StringBuilder(tools.getShortName()).append(":").append(tools.isEnabled());
+            for (ScopeToolState state : tools.getTools()) {
+                sb.append(":").append(state.getScopeName()).append("=").append(state.getLevel().getSeverity().getName()).append("/").append(state.isEnabled());
+            }
+            inspections.add(sb.toString());
+        }
+        Collections.sort(inspections);
+        hash.add(String.join(",", inspections));
+
+        String[] intentionOptions = file.getUserData(TestUtils.TEST_INTENTION_OPTIONS);
+        hash.add(intentionOptions == null ? null : String.join(",", intentionOptions));
+
+        hash.add(new TreeMap<>(WarmFixtures.getLineMarkerSettings().providers).toString());
+        hash.add(getCodeStyleHash(project));
+
+        for (Map.Entry<String, Object> entry : new TreeMap<>(additionalFiles).entrySet()) {
+            hash.add(entry.getKey()).add(ReusedAdditionalFiles.getHash(entry.getValue()));
+        }
+
+        return hash.toHex();
+    }
+
+    /**
+     * Get cached result
+     *
+     * @param key key from {@link #getKey(PsiFile, CharSequence, Map)}
+     *
+     * @return highlighting snapshot or null if not cached
+     */
+    @Nullable
+    public static HighlightingSnapshot get(@NotNull String key) {
+        synchronized (ourResults) {
+            HighlightingSnapshot result = ourResults.get(key);
+            if (result != null && LOG.isDebugEnabled()) LOG.debug("Highlighting result cache hit " + key);
+            return result;
+        }
+    }
+
+    public static void put(@NotNull String key, @NotNull HighlightingSnapshot result) {
+        int maxSize = SpecTestProperties.getInt(SpecTestProperties.HIGHLIGHTING_CACHE_SIZE, 1024);
+        if (maxSize <= 0) return;
+
+        synchronized (ourResults) {
+            ourResults.put(key, result);
+
+            // evict least recently used
+            while (ourResults.size() > maxSize) {
+                ourResults.remove(ourResults.keySet().iterator().next());
+            }
+        }
+    }
+
+    public static void clear() {
+        synchronized (ourResults) {
+            ourResults.clear();
+        }
+    }
+
+    @NotNull
+    static String getCodeStyleHash(@NotNull Project project) {
+        CodeStyleSettingsManager manager = CodeStyleSettingsManager.getInstance(project);
+        CodeStyleSettings settings = manager.getTemporarySettings();
+        if (settings == null) settings = manager.getMainProjectCodeStyle();
+        if (settings == null) return "";
+
+        synchronized (ourCodeStyleHashes) {
+            for (CodeStyleHash codeStyleHash : ourCodeStyleHashes) {
+                if (codeStyleHash.settings.get() == settings) return codeStyleHash.hash;
+            }
+
+            String hash = new ContentHash().add(CodeStyleSettingsPool.getState(settings)).toHex();
+            ourCodeStyleHashes.removeIf(codeStyleHash -> codeStyleHash.settings.get() == null);
+            if (ourCodeStyleHashes.size() >= MAX_CODE_STYLE_HASHES) ourCodeStyleHashes.remove(0);
+            ourCodeStyleHashes.add(new CodeStyleHash(settings, hash));
+            return hash;
+        }
+    }
+}
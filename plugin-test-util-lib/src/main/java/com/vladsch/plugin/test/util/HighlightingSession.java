@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.codeInsight.intention.IntentionAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.TextRange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Highlighting of an example shared by inspection, quick fix, intention and line marker rendering
+ * <p>
+ * The daemon is run once per document modification stamp, highlights are also left in the document markup model where
+ * intentions and line markers are read from. Anything else which changes highlighting results, such as a daemon
+ * restart after changing settings, must {@link #invalidate()} the session.
+ */
+public class HighlightingSession {
+    private @Nullable Document myDocument;
+    private long myModificationStamp;
+    private @Nullable List<HighlightInfo> myInfos;
+    private int myPasses;
+
+    /**
+     * Get highlight infos of the document, running the highlighter if the document changed since the last run
+     *
+     * @param document    document being highlighted
+     * @param highlighter runs the daemon and returns highlight infos
+     *
+     * @return copy of highlight infos
+     */
+    @NotNull
+    public List<HighlightInfo> getInfos(@NotNull Document document, @NotNull Supplier<List<HighlightInfo>> highlighter) {
+        if (myInfos == null || myDocument != document || myModificationStamp != document.getModificationStamp()) {
+            myInfos = new ArrayList<>(highlighter.get());
+            myDocument = document;
+            // NOTE: stamp after highlighting, commit of documents by the highlighter does not change it
+            myModificationStamp = document.getModificationStamp();
+            myPasses++;
+        }
+        return new ArrayList<>(myInfos);
+    }
+
+    /**
+     * Get quick fixes of highlight infos
+     *
+     * @param document    document being highlighted
+     * @param highlighter runs the daemon and returns highlight infos
+     *
+     * @return quick fix actions
+     */
+    @NotNull
+    public List<IntentionAction> getQuickFixes(@NotNull Document document, @NotNull Supplier<List<HighlightInfo>> highlighter) {
+        List<IntentionAction> actions = new ArrayList<>();
+        for (HighlightInfo info : getInfos(document, highlighter)) {
+            List<Pair<HighlightInfo.IntentionActionDescriptor, TextRange>> fixRanges = info.quickFixActionRanges;
+            if (fixRanges != null) {
+                for (Pair<HighlightInfo.IntentionActionDescriptor, TextRange> pair : fixRanges) {
+                    actions.add(pair.first.getAction());
+                }
+            }
+        }
+        return actions;
+    }
+
+    public void invalidate() {
+        myInfos = null;
+        myDocument = null;
+    }
+
+    /**
+     * @return number of times the daemon was run
+     */
+    public int getPasses() {
+        return myPasses;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.codeInsight.daemon.impl.HighlightInfoType;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.editor.markup.TextAttributes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable snapshot of highlight infos and line marker text of a highlighting run
+ * <p>
+ * Only what expected highlighting markup is checked against is kept: range, type, severity, description, tooltip, text
+ * attributes and end of line and file level flags. Highlight infos created from the snapshot have no quick fixes.
+ */
+public final class HighlightingSnapshot {
+    static class Info {
+        final int startOffset;
+        final int endOffset;
+        final @NotNull HighlightInfoType type;
+        final @NotNull HighlightSeverity severity;
+        final @Nullable String description;
+        final @Nullable String toolTip;
+        final @Nullable TextAttributes textAttributes;
+        final boolean isAfterEndOfLine;
+        final boolean isFileLevelAnnotation;
+
+        Info(@NotNull HighlightInfo info) {
+            this.startOffset = info.startOffset;
+            this.endOffset = info.endOffset;
+            this.type = info.type;
+            this.severity = info.getSeverity();
+            this.description = info.getDescription();
+            this.toolTip = info.getToolTip();
+            TextAttributes attributes = info.getTextAttributes(null, null);
+            this.textAttributes = attributes == null ? null : attributes.clone();
+            this.isAfterEndOfLine = info.isAfterEndOfLine();
+            this.isFileLevelAnnotation = info.isFileLevelAnnotation();
+        }
+
+        @NotNull
+        HighlightInfo create() {
+            HighlightInfo.Builder builder = HighlightInfo.newHighlightInfo(type).range(startOffset, endOffset).severity(severity);
+            if (description != null) builder.description(description);
+            if (toolTip != null) builder.escapedToolTip(toolTip);
+            if (textAttributes != null) builder.textAttributes(textAttributes.clone());
+            if (isAfterEndOfLine) builder.endOfLine();
+            if (isFileLevelAnnotation) builder.fileLevelAnnotation();
+            return builder.createUnconditionally();
+        }
+    }
+
+    private final @NotNull List<Info> myInfos;
+    private final @NotNull String myLineMarkers;
+
+    /**
+     * @param infos       highlight infos
+     * @param lineMarkers line marker text of the document
+     */
+    public HighlightingSnapshot(@NotNull List<HighlightInfo> infos, @NotNull String lineMarkers) {
+        ArrayList<Info> snapshot = new ArrayList<>(infos.size());
+        for (HighlightInfo info : infos) {
+            snapshot.add(new Info(info));
+        }
+        myInfos = snapshot;
+        myLineMarkers = lineMarkers;
+    }
+
+    /**
+     * @return new highlight infos of the snapshot
+     */
+    @NotNull
+    public List<HighlightInfo> getInfos() {
+        ArrayList<HighlightInfo> infos = new ArrayList<>(myInfos.size());
+        for (Info info : myInfos) {
+            infos.add(info.create());
+        }
+        return infos;
+    }
+
+    @NotNull
+    public String getLineMarkers() {
+        return myLineMarkers;
+    }
+}
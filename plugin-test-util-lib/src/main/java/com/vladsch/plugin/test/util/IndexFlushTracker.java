@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index flush before highlighting which is skipped or narrowed when nothing else changed since the previous flush
+ * <p>
+ * VFS and PSI modification counts are recorded after each flush and around creation of the example file. The flush is
+ * skipped if counts did not change since the previous flush, such as when highlighting is repeated for the same
+ * example, and narrowed to the example file if creating it was the only change. Otherwise all indexes are brought up
+ * to date as before. Counts of skipped, narrowed and full flushes are added to phase timings.
+ */
+public final class IndexFlushTracker {
+    private static final Key<IndexFlushTracker> INDEX_FLUSH_TRACKER_KEY = Key.create("plugin.test.util.IndexFlushTracker");
+
+    final public static String SKIPPED = "indexFlush.skipped";
+    final public static String NARROWED = "indexFlush.narrowed";
+    final public static String FULL = "indexFlush.full";
+
+    static class Counts {
+        final long vfsCount;
+        final long psiCount;
+
+        Counts(@NotNull Project project) {
+            this.vfsCount = VirtualFileManager.getInstance().getModificationCount();
+            this.psiCount = PsiModificationTracker.getInstance(project).getModificationCount();
+        }
+
+        boolean isSame(@Nullable Counts other) {
+            return other != null && vfsCount == other.vfsCount && psiCount == other.psiCount;
+        }
+    }
+
+    private @Nullable Counts myFlushed;
+    private @Nullable Counts myBeforeExampleFile;
+    private @Nullable Counts myAfterExampleFile;
+
+    private IndexFlushTracker() {
+    }
+
+    @NotNull
+    static IndexFlushTracker getInstance(@NotNull Project project) {
+        IndexFlushTracker tracker = project.getUserData(INDEX_FLUSH_TRACKER_KEY);
+        if (tracker == null) {
+            tracker = new IndexFlushTracker();
+            project.putUserData(INDEX_FLUSH_TRACKER_KEY, tracker);
+        }
+        return tracker;
+    }
+
+    /**
+     * Record counts before the example file is created
+     *
+     * @param project project
+     */
+    public static void startExampleFile(@NotNull Project project) {
+        IndexFlushTracker tracker = getInstance(project);
+        tracker.myBeforeExampleFile = new Counts(project);
+        tracker.myAfterExampleFile = null;
+    }
+
+    /**
+     * Record counts after the example file is created and configured
+     *
+     * @param project project
+     */
+    public static void endExampleFile(@NotNull Project project) {
+        getInstance(project).myAfterExampleFile = new Counts(project);
+    }
+
+    /**
+     * Bring indexes up to date for highlighting of a file, documents must be committed
+     *
+     * @param project project
+     * @param file    file being highlighted
+     */
+    public static void ensureUpToDate(@NotNull Project project, @NotNull PsiFile file) {
+        IndexFlushTracker tracker = getInstance(project);
+        Counts counts = new Counts(project);
+
+        if (DumbService.isDumb(project)) {
+            // NOTE: nothing is flushed in dumb mode so nothing can be assumed for the next flush
+            tracker.myFlushed = null;
+        } else if (counts.isSame(tracker.myFlushed)) {
+            SpecPhaseTimings.count(SKIPPED);
+        } else if (tracker.myFlushed != null && tracker.myFlushed.isSame(tracker.myBeforeExampleFile) && counts.isSame(tracker.myAfterExampleFile) && file.getVirtualFile() != null) {
+            VirtualFile virtualFile = file.getVirtualFile();
+            ReadAction.run(() -> {
+                GlobalSearchScope scope = GlobalSearchScope.fileScope(project, virtualFile);
+                for (FileBasedIndexExtension<?, ?> extension : FileBasedIndexExtension.EXTENSION_POINT_NAME.getExtensionList()) {
+                    FileBasedIndex.getInstance().ensureUpToDate(extension.getName(), project, scope);
+                }
+            });
+            tracker.myFlushed = new Counts(project);
+            SpecPhaseTimings.count(NARROWED);
+        } else {
+            CodeInsightTestFixtureImpl.ensureIndexesUpToDate(project);
+            tracker.myFlushed = new Counts(project);
+            SpecPhaseTimings.count(FULL);
+        }
+    }
+}
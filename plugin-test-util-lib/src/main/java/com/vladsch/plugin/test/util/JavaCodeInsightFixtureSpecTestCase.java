@@ -41,6 +41,7 @@ import com.vladsch.plugin.test.util.cases.SpecTest;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.After;
+import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -49,7 +50,6 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.lang.annotation.Annotation;
-import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.rules.ExpectedException.none;
@@ -66,6 +66,16 @@ public abstract class JavaCodeInsightFixtureSpecTestCase extends JavaCodeInsight
         // NOTE: for UsefulTestCase tearDown() should not be invoked from any @After methods
     }
 
+    @AfterClass
+    public static void reportPhaseTimings() {
+        SpecPhaseTimings.report();
+    }
+
+    @AfterClass
+    public static void reportLeaks() {
+        SpecLeakDetector.report();
+    }
+
     @Override
     protected void tuneFixture(JavaModuleFixtureBuilder moduleBuilder) throws Exception {
         super.tuneFixture(moduleBuilder);
@@ -93,10 +103,7 @@ public abstract class JavaCodeInsightFixtureSpecTestCase extends JavaCodeInsight
     public @NotNull SpecExample myExample = SpecExample.NULL;
 
     // standard options
-    final private static Map<String, DataHolder> optionsMap = new HashMap<>();
-    static {
-        optionsMap.putAll(SpecTest.getOptionsMap());
-    }
+    final private static Map<String, DataHolder> optionsMap = SpecTest.OPTIONS.getOptions();
 
     private final Map<String, ? extends DataHolder> myOptionsMap;
     private final @NotNull DataHolder myDefaultOptions;
@@ -153,7 +160,7 @@ public abstract class JavaCodeInsightFixtureSpecTestCase extends JavaCodeInsight
     @Override final public boolean isIconRequired() { return super.isIconRequired();}
     //@Override final public void addTmpFileToKeep(@NotNull File file) { super.addTmpFileToKeep(file);}
     @NotNull @Override final public Disposable getTestRootDisposable() { return super.getTestRootDisposable();}
-    @Override final public boolean shouldRunTest() { return super.shouldRunTest();}
+    @Override final public boolean shouldRunTest() { return super.shouldRunTest() && !isCachedPass();}
     //@Override final public void invokeTestRunnable(@NotNull Runnable runnable) throws Exception { super.invokeTestRunnable(runnable);}
     @Override final public void defaultRunBare(@NotNull ThrowableRunnable<Throwable> testRunnable) throws Throwable { super.defaultRunBare(testRunnable);}
     //@Override final public void runBare() throws Throwable { super.runBare();}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+
+/**
+ * Spec example handle which keeps only the example header and the offset of its text in the spec cache file,
+ * source, html, ast and comment are loaded on first use and kept softly reachable.
+ * <p>
+ * Fields of the superclass are empty, methods which copy or compare the example use {@link #materialize()} and
+ * return or compare a fully loaded {@link SpecExample}.
+ * <p>
+ * Enable with -Dplugin.test.util.lazy-examples=true, requires the spec cache
+ */
+public class LazySpecExample extends SpecExample {
+    private static final int SOURCE = 0;
+    private static final int HTML = 1;
+    private static final int AST = 2;
+    private static final int COMMENT = 3;
+
+    private final @NotNull File myCacheFile;
+    private final @NotNull String myContentHash;
+    private final long myOffset;
+    private @NotNull SoftReference<String[]> myText = new SoftReference<>(null);
+
+    public LazySpecExample(@NotNull ResourceLocation location, int lineNumber, @Nullable String optionsSet, @Nullable String section, int exampleNumber, @NotNull File cacheFile, @NotNull String contentHash, long offset) {
+        super(location, lineNumber, optionsSet, section, exampleNumber, "", "", null, null);
+        myCacheFile = cacheFile;
+        myContentHash = contentHash;
+        myOffset = offset;
+    }
+
+    public static boolean isEnabled() {
+        return SpecTestProperties.getBoolean(SpecTestProperties.LAZY_EXAMPLES, false);
+    }
+
+    @NotNull
+    @Override
+    public String getSource() {
+        String source = getText()[SOURCE];
+        return source == null ? "" : source;
+    }
+
+    @NotNull
+    @Override
+    public String getHtml() {
+        String html = getText()[HTML];
+        return html == null ? "" : html;
+    }
+
+    @Nullable
+    @Override
+    public String getAst() {
+        return getText()[AST];
+    }
+
+    @Nullable
+    @Override
+    public String getComment() {
+        return getText()[COMMENT];
+    }
+
+    /**
+     * @return spec example with all text loaded
+     */
+    @NotNull
+    public SpecExample materialize() {
+        String[] text = getText();
+        return new SpecExample(getResourceLocation(), getLineNumber(), getOptionsSet(), getSection(), getExampleNumber(),
+                text[SOURCE] == null ? "" : text[SOURCE], text[HTML] == null ? "" : text[HTML], text[AST], text[COMMENT]);
+    }
+
+    @NotNull
+    @Override
+    public SpecExample withResourceLocation(@NotNull ResourceLocation resourceLocation) {
+        return materialize().withResourceLocation(resourceLocation);
+    }
+
+    @NotNull
+    @Override
+    public SpecExample withOptionsSet(@Nullable String optionsSet) {
+        return materialize().withOptionsSet(optionsSet);
+    }
+
+    @NotNull
+    @Override
+    public SpecExample withSource(@NotNull String source) {
+        return materialize().withSource(source);
+    }
+
+    @NotNull
+    @Override
+    public SpecExample withHtml(@NotNull String html) {
+        return materialize().withHtml(html);
+    }
+
+    @NotNull
+    @Override
+    public SpecExample withAst(@Nullable String ast) {
+        return materialize().withAst(ast);
+    }
+
+    @NotNull
+    @Override
+    public SpecExample withComment(@Nullable String comment) {
+        return materialize().withComment(comment);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SpecExample)) return false;
+        return materialize().equals(o instanceof LazySpecExample ? ((LazySpecExample) o).materialize() : o);
+    }
+
+    @Override
+    public int hashCode() {
+        return materialize().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return materialize().toString();
+    }
+
+    @NotNull
+    private synchronized String[] getText() {
+        String[] text = myText.get();
+        if (text == null) {
+            text = loadText();
+            myText = new SoftReference<>(text);
+        }
+        return text;
+    }
+
+    @NotNull
+    private String[] loadText() {
+        try (RandomAccessFile file = new RandomAccessFile(myCacheFile, "r")) {
+            // NOTE: another test fork may have re-written the cache file for a changed spec
+            if (!SpecExampleCache.readHeader(file, getResourceLocation(), myContentHash)) {
+                throw new IllegalStateException("Spec cache " + myCacheFile + " changed while running tests for " + getResourceLocation().getResourcePath());
+            }
+
+            file.seek(myOffset);
+
+            String[] text = new String[4];
+            text[SOURCE] = SpecExampleCache.readString(file);
+            text[HTML] = SpecExampleCache.readString(file);
+            text[AST] = SpecExampleCache.readString(file);
+            text[COMMENT] = SpecExampleCache.readString(file);
+            return text;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read spec example from " + myCacheFile, e);
+        }
+    }
+}
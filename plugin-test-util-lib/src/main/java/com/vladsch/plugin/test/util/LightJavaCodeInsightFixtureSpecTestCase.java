@@ -22,12 +22,14 @@ import com.intellij.openapi.editor.ex.EditorEx;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.pom.java.LanguageLevel;
 import com.intellij.psi.PsiElementFactory;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.testFramework.LightProjectDescriptor;
 import com.intellij.testFramework.fixtures.CodeInsightTestFixture;
+import com.intellij.testFramework.fixtures.JavaCodeInsightTestFixture;
 import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
 import com.intellij.testFramework.fixtures.TempDirTestFixture;
 import com.intellij.util.ThrowableRunnable;
@@ -40,6 +42,7 @@ import com.vladsch.plugin.test.util.cases.SpecTest;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.After;
+import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -48,13 +51,12 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.lang.annotation.Annotation;
-import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.rules.ExpectedException.none;
 
 @RunWith(value = Parameterized.class)
-public abstract class LightJavaCodeInsightFixtureSpecTestCase extends LightJavaCodeInsightFixtureTestCase implements CodeInsightFixtureSpecTestCase {
+public abstract class LightJavaCodeInsightFixtureSpecTestCase extends LightJavaCodeInsightFixtureTestCase implements CodeInsightFixtureSpecTestCase, WarmFixtures.Owner {
     @Before
     public void before() throws Throwable {
         // NOTE: for UsefulTestCase setUp() should not be invoked from any @Before methods
@@ -72,13 +74,11 @@ public abstract class LightJavaCodeInsightFixtureSpecTestCase extends LightJavaC
     public @NotNull SpecExample myExample = SpecExample.NULL;
 
     // standard options
-    final private static Map<String, DataHolder> optionsMap = new HashMap<>();
-    static {
-        optionsMap.putAll(SpecTest.getOptionsMap());
-    }
+    final private static Map<String, DataHolder> optionsMap = SpecTest.OPTIONS.getOptions();
 
     private final Map<String, ? extends DataHolder> myOptionsMap;
     private final @NotNull DataHolder myDefaultOptions;
+    private boolean myIsWarm;
 
     public LightJavaCodeInsightFixtureSpecTestCase(@Nullable Map<String, ? extends DataHolder> optionMap, @Nullable DataHolder... defaultOptions) {
         // add standard options
@@ -103,6 +103,64 @@ public abstract class LightJavaCodeInsightFixtureSpecTestCase extends LightJavaC
         defaultTestCase();
     }
 
+    @Override
+    protected void setUp() throws Exception {
+        if (isWarmFixture()) {
+            CodeInsightTestFixture fixture = WarmFixtures.acquire(getClass());
+            if (fixture != null) {
+                // NOTE: super.setUp() is skipped for an example which gets the warm fixture, it does not get the per test
+                //  set up of UsefulTestCase, such as its temp dir and stress test and Disposer debug modes, nor a new
+                //  project fixture, temp dir fixture, editor fixture, inspection profile reset and the leak trackers of the
+                //  fixture set up. State examples are known to change is reset and the rest verified by
+                //  WarmFixtures.release() in tearDown(), a fixture with left over state is torn down and the next example
+                //  runs the full set up.
+                myIsWarm = true;
+                myFixture = (JavaCodeInsightTestFixture) fixture;
+                return;
+            }
+
+            super.setUp();
+            WarmFixtures.saveState();
+        } else {
+            super.setUp();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (isWarmFixture() && myFixture != null) {
+            // NOTE: disposables of this example are disposed, the test root disposable of the owner is disposed by its tear down
+            if (myIsWarm) Disposer.dispose(getTestRootDisposable());
+            if (WarmFixtures.release(getClass(), this, myFixture)) return;
+        }
+        super.tearDown();
+    }
+
+    @Override
+    final public void tearDownWarmFixture() throws Exception {
+        super.tearDown();
+    }
+
+    @AfterClass
+    public static void tearDownWarmFixtures() throws Throwable {
+        WarmFixtures.tearDown();
+
+        // NOTE: reported after tear down, a warm fixture references objects of the last example until it is torn down
+        SpecLeakDetector.report();
+    }
+
+    @AfterClass
+    public static void reportPhaseTimings() {
+        SpecPhaseTimings.report();
+    }
+
+    /**
+     * @return true if fixture is kept across examples of the test class, see {@link SpecTest#WARM_FIXTURE}
+     */
+    public boolean isWarmFixture() {
+        return SpecTest.WARM_FIXTURE.get(myDefaultOptions);
+    }
+
     // CodeInsightFixtureSpecTestCase implementation
     // @formatter:off
     @Override final public PsiFile getFile() { return super.getFile();}
@@ -133,7 +191,7 @@ public abstract class LightJavaCodeInsightFixtureSpecTestCase extends LightJavaC
     @Override final public boolean isIconRequired() { return super.isIconRequired();}
     //@Override final public void addTmpFileToKeep(@NotNull File file) { super.addTmpFileToKeep(file);}
     @NotNull @Override final public Disposable getTestRootDisposable() { return super.getTestRootDisposable();}
-    @Override final public boolean shouldRunTest() { return super.shouldRunTest();}
+    @Override final public boolean shouldRunTest() { return super.shouldRunTest() && !isCachedPass();}
     //@Override final public void invokeTestRunnable(@NotNull Runnable runnable) throws Exception { super.invokeTestRunnable(runnable);}
     @Override final public void defaultRunBare(@NotNull ThrowableRunnable<Throwable> testRunnable) throws Throwable { super.defaultRunBare(testRunnable);}
     //@Override final public void runBare() throws Throwable { super.runBare();}
@@ -21,6 +21,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.testFramework.fixtures.BasePlatformTestCase;
@@ -37,6 +38,7 @@ import com.vladsch.plugin.test.util.cases.SpecTest;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.After;
+import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -49,7 +51,6 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Delayed;
@@ -58,7 +59,7 @@ import java.util.concurrent.TimeUnit;
 import static org.junit.rules.ExpectedException.none;
 
 @RunWith(value = Parameterized.class)
-public abstract class LightPlatformCodeInsightFixtureSpecTestCase extends BasePlatformTestCase implements CodeInsightFixtureSpecTestCase {
+public abstract class LightPlatformCodeInsightFixtureSpecTestCase extends BasePlatformTestCase implements CodeInsightFixtureSpecTestCase, WarmFixtures.Owner {
     @Before
     public void before() throws Throwable {
         // NOTE: for UsefulTestCase setUp() should not be invoked from any @Before methods
@@ -113,13 +114,11 @@ public abstract class LightPlatformCodeInsightFixtureSpecTestCase extends BasePl
     public @NotNull SpecExample myExample = SpecExample.NULL;
 
     // standard options
-    final private static Map<String, DataHolder> optionsMap = new HashMap<>();
-    static {
-        optionsMap.putAll(SpecTest.getOptionsMap());
-    }
+    final private static Map<String, DataHolder> optionsMap = SpecTest.OPTIONS.getOptions();
 
     private final Map<String, ? extends DataHolder> myOptionsMap;
     private final @NotNull DataHolder myDefaultOptions;
+    private boolean myIsWarm;
 
     public LightPlatformCodeInsightFixtureSpecTestCase(@Nullable Map<String, ? extends DataHolder> optionMap, @Nullable DataHolder... defaultOptions) {
         // add standard options
@@ -138,6 +137,64 @@ public abstract class LightPlatformCodeInsightFixtureSpecTestCase extends BasePl
         defaultTestCase();
     }
 
+    @Override
+    protected void setUp() throws Exception {
+        if (isWarmFixture()) {
+            CodeInsightTestFixture fixture = WarmFixtures.acquire(getClass());
+            if (fixture != null) {
+                // NOTE: super.setUp() is skipped for an example which gets the warm fixture, it does not get the per test
+                //  set up of UsefulTestCase, such as its temp dir and stress test and Disposer debug modes, nor a new
+                //  project fixture, temp dir fixture, editor fixture, inspection profile reset and the leak trackers of the
+                //  fixture set up. State examples are known to change is reset and the rest verified by
+                //  WarmFixtures.release() in tearDown(), a fixture with left over state is torn down and the next example
+                //  runs the full set up.
+                myIsWarm = true;
+                myFixture = fixture;
+                return;
+            }
+
+            super.setUp();
+            WarmFixtures.saveState();
+        } else {
+            super.setUp();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (isWarmFixture() && myFixture != null) {
+            // NOTE: disposables of this example are disposed, the test root disposable of the owner is disposed by its tear down
+            if (myIsWarm) Disposer.dispose(getTestRootDisposable());
+            if (WarmFixtures.release(getClass(), this, myFixture)) return;
+        }
+        super.tearDown();
+    }
+
+    @Override
+    final public void tearDownWarmFixture() throws Exception {
+        super.tearDown();
+    }
+
+    @AfterClass
+    public static void tearDownWarmFixtures() throws Throwable {
+        WarmFixtures.tearDown();
+
+        // NOTE: reported after tear down, a warm fixture references objects of the last example until it is torn down
+        SpecLeakDetector.report();
+    }
+
+    @AfterClass
+    public static void reportPhaseTimings() {
+        SpecPhaseTimings.report();
+    }
+
+    /**
+     * @return true if fixture is kept across examples of the test class, see {@link SpecTest#WARM_FIXTURE}
+     */
+    public boolean isWarmFixture() {
+        return SpecTest.WARM_FIXTURE.get(myDefaultOptions);
+    }
+
     // CodeInsightFixtureSpecTestCase implementation
     // @formatter:off
     @Override @NotNull final public DataHolder getDefaultOptions() { return myDefaultOptions; }
@@ -161,7 +218,7 @@ public abstract class LightPlatformCodeInsightFixtureSpecTestCase extends BasePl
     @Override final public boolean isIconRequired() { return super.isIconRequired();}
     //@Override final public void addTmpFileToKeep(@NotNull File file) { super.addTmpFileToKeep(file);}
     @NotNull @Override final public Disposable getTestRootDisposable() { return super.getTestRootDisposable();}
-    @Override final public boolean shouldRunTest() { return super.shouldRunTest();}
+    @Override final public boolean shouldRunTest() { return super.shouldRunTest() && !isCachedPass();}
     //@Override final public void invokeTestRunnable(@NotNull Runnable runnable) throws Exception { super.invokeTestRunnable(runnable);}
     @Override final public void defaultRunBare(@NotNull ThrowableRunnable<Throwable> testRunnable) throws Throwable { super.defaultRunBare(testRunnable);}
     //@Override final public void runBare() throws Throwable { super.runBare();}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.vladsch.flexmark.util.data.DataHolder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable map of spec example option names to their options
+ * <p>
+ * Registries are built once, usually in a static final field, so they are safely published and read without
+ * locking. The builder rejects duplicate option names, an option of a parent registry can only be replaced with
+ * {@link Builder#override(String, DataHolder)}.
+ */
+public final class OptionsRegistry {
+    final public static OptionsRegistry EMPTY = new Builder().build();
+
+    private final @NotNull Map<String, DataHolder> myOptions;
+
+    private OptionsRegistry(@NotNull Map<String, DataHolder> options) {
+        myOptions = Collections.unmodifiableMap(options);
+    }
+
+    /**
+     * @return unmodifiable map of option name to options
+     */
+    @NotNull
+    public Map<String, DataHolder> getOptions() {
+        return myOptions;
+    }
+
+    @Nullable
+    public DataHolder get(@NotNull String name) {
+        return myOptions.get(name);
+    }
+
+    public boolean contains(@NotNull String name) {
+        return myOptions.containsKey(name);
+    }
+
+    public int size() {
+        return myOptions.size();
+    }
+
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param parent registry whose options are included
+     *
+     * @return builder with all options of parent
+     */
+    @NotNull
+    public static Builder builder(@NotNull OptionsRegistry parent) {
+        return new Builder().addAll(parent.myOptions);
+    }
+
+    public static class Builder {
+        private final LinkedHashMap<String, DataHolder> myOptions = new LinkedHashMap<>();
+
+        Builder() {
+        }
+
+        /**
+         * Add option
+         *
+         * @param name    option name
+         * @param options options for the option name
+         *
+         * @return this
+         *
+         * @throws IllegalStateException if option name is already registered
+         */
+        @NotNull
+        public Builder add(@NotNull String name, @NotNull DataHolder options) {
+            if (myOptions.containsKey(name)) {
+                throw new IllegalStateException("Option '" + name + "' is already registered");
+            }
+            myOptions.put(name, options.toImmutable());
+            return this;
+        }
+
+        /**
+         * Add all options
+         *
+         * @param options map of option name to options
+         *
+         * @return this
+         *
+         * @throws IllegalStateException if any option name is already registered
+         */
+        @NotNull
+        public Builder addAll(@NotNull Map<String, ? extends DataHolder> options) {
+            for (Map.Entry<String, ? extends DataHolder> entry : options.entrySet()) {
+                add(entry.getKey(), entry.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * Replace an already registered option
+         *
+         * @param name    option name
+         * @param options options for the option name
+         *
+         * @return this
+         *
+         * @throws IllegalStateException if option name is not registered
+         */
+        @NotNull
+        public Builder override(@NotNull String name, @NotNull DataHolder options) {
+            if (!myOptions.containsKey(name)) {
+                throw new IllegalStateException("Option '" + name + "' is not registered and cannot be overridden");
+            }
+            myOptions.put(name, options.toImmutable());
+            return this;
+        }
+
+        @NotNull
+        public OptionsRegistry build() {
+            return new OptionsRegistry(new LinkedHashMap<>(myOptions));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JVM wide least recently used cache of resource text keyed by resource URL
+ * <p>
+ * Total size of cached content is limited by -Dplugin.test.util.resource-cache-kb, default 65536. Content larger than
+ * the limit is loaded but not cached. Binary resources are not cached on the heap, see {@link BinaryAssets}.
+ */
+public final class ResourceContentCache {
+    private static final LinkedHashMap<String, String> ourContent = new LinkedHashMap<>(16, 0.75f, true);
+    private static long ourSize = 0;
+
+    private ResourceContentCache() {
+    }
+
+    /**
+     * Get resource text, decoded as UTF-8
+     *
+     * @param location resource location
+     *
+     * @return text
+     */
+    @NotNull
+    public static String getText(@NotNull ResourceLocation location) {
+        String key = getUrl(location);
+        synchronized (ourContent) {
+            String text = ourContent.get(key);
+            if (text != null) return text;
+        }
+
+        String text = new String(loadBytes(location), StandardCharsets.UTF_8);
+        cache(key, text);
+        return text;
+    }
+
+    public static void clear() {
+        synchronized (ourContent) {
+            ourContent.clear();
+            ourSize = 0;
+        }
+    }
+
+    @NotNull
+    static String getUrl(@NotNull ResourceLocation location) {
+        URL url = location.getResourceClass().getResource(location.getResourcePath());
+        return url != null ? url.toExternalForm() : location.getResourceClass().getName() + ":" + location.getResourcePath();
+    }
+
+    @NotNull
+    static byte[] loadBytes(@NotNull ResourceLocation location) {
+        try (InputStream inputStream = location.getResourceInputStream()) {
+            return IOUtils.toByteArray(inputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read resource " + location.getResourcePath(), e);
+        }
+    }
+
+    static long getSize(@NotNull String content) {
+        return content.length() * 2L;
+    }
+
+    private static void cache(@NotNull String key, @NotNull String content) {
+        long size = getSize(content);
+        long maxSize = SpecTestProperties.getInt(SpecTestProperties.RESOURCE_CACHE_KB, 65536) * 1024L;
+        if (size > maxSize) return;
+
+        synchronized (ourContent) {
+            String previous = ourContent.put(key, content);
+            if (previous != null) ourSize -= getSize(previous);
+            ourSize += size;
+
+            // evict least recently used
+            Iterator<Map.Entry<String, String>> iterator = ourContent.entrySet().iterator();
+            while (ourSize > maxSize && iterator.hasNext()) {
+                Map.Entry<String, String> entry = iterator.next();
+                ourSize -= getSize(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+}
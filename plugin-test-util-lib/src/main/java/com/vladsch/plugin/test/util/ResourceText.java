@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Lazy reference to the text of a resource, loaded through {@link ResourceContentCache} when used
+ */
+public final class ResourceText {
+    private final @NotNull ResourceLocation myResourceLocation;
+
+    public ResourceText(@NotNull ResourceLocation resourceLocation) {
+        myResourceLocation = resourceLocation;
+    }
+
+    @NotNull
+    public ResourceLocation getResourceLocation() {
+        return myResourceLocation;
+    }
+
+    @NotNull
+    public String getText() {
+        return ResourceContentCache.getText(myResourceLocation);
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceText[" + myResourceLocation.getResourcePath() + "]";
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.impl.EditorHistoryManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Additional project files kept in the project across examples, keyed by relative path and content hash
+ * <p>
+ * Only the difference between the files of consecutive examples is deleted, updated or created. Files which were
+ * modified by an example, or became invalid because the fixture deleted them, are updated or created again.
+ * <p>
+ * Used only by test classes with both {@link com.vladsch.plugin.test.util.cases.SpecTest#REUSE_ADDITIONAL_FILES} and
+ * {@link com.vladsch.plugin.test.util.cases.SpecTest#WARM_FIXTURE}, tearDown() of a light fixture deletes its temp dir.
+ */
+public final class ReusedAdditionalFiles {
+    private static final Logger LOG = Logger.getInstance(ReusedAdditionalFiles.class);
+    private static final Key<ReusedAdditionalFiles> REUSED_FILES_KEY = Key.create("plugin.test.util.ReusedAdditionalFiles");
+
+    private static class ReusedFile {
+        final @NotNull String hash;
+        final @NotNull VirtualFile file;
+        final long modificationStamp;
+
+        ReusedFile(@NotNull String hash, @NotNull VirtualFile file) {
+            this.hash = hash;
+            this.file = file;
+            this.modificationStamp = file.getModificationStamp();
+        }
+
+        boolean isUnchanged(@NotNull String hash) {
+            return file.isValid() && file.getModificationStamp() == modificationStamp && this.hash.equals(hash);
+        }
+    }
+
+    private final @NotNull HashMap<String, ReusedFile> myFiles = new HashMap<>();
+    private final @NotNull HashMap<String, String> myPendingHashes = new HashMap<>();
+
+    private ReusedAdditionalFiles() {
+    }
+
+    @NotNull
+    public static ReusedAdditionalFiles getInstance(@NotNull Project project) {
+        ReusedAdditionalFiles reusedFiles = project.getUserData(REUSED_FILES_KEY);
+        if (reusedFiles == null) {
+            reusedFiles = new ReusedAdditionalFiles();
+            project.putUserData(REUSED_FILES_KEY, reusedFiles);
+        }
+        return reusedFiles;
+    }
+
+    /**
+     * Delete all reused files of the project, used when a test does not reuse additional files so files of a previous
+     * test do not affect its results
+     *
+     * @param project   project
+     * @param requestor requestor for file deletion
+     */
+    public static void clear(@NotNull Project project, @Nullable Object requestor) {
+        ReusedAdditionalFiles reusedFiles = project.getUserData(REUSED_FILES_KEY);
+        if (reusedFiles != null) {
+            project.putUserData(REUSED_FILES_KEY, null);
+            reusedFiles.deleteFiles(project, new ArrayList<>(reusedFiles.myFiles.values()), requestor);
+        }
+    }
+
+    /**
+     * @param project project
+     * @param file    virtual file
+     *
+     * @return true if file is kept in the project for following examples
+     */
+    public static boolean isReusedFile(@NotNull Project project, @NotNull VirtualFile file) {
+        ReusedAdditionalFiles reusedFiles = project.getUserData(REUSED_FILES_KEY);
+        return reusedFiles != null && reusedFiles.isReused(file);
+    }
+
+    /**
+     * @param file virtual file
+     *
+     * @return true if file is kept for following examples and must not be deleted
+     */
+    public boolean isReused(@NotNull VirtualFile file) {
+        for (ReusedFile reusedFile : myFiles.values()) {
+            if (reusedFile.file.equals(file)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Update reused files to match additional files of the example
+     * <p>
+     * Files not needed by the example are deleted, changed files are updated in place. Reused files are added to
+     * virtual files, files which need to be created are returned and must be passed to {@link #retain(Map)}
+     * after creation.
+     *
+     * @param project      project
+     * @param files        additional project files of the example
+     * @param virtualFiles map of relative path to virtual file of example files, updated with reused files
+     * @param requestor    requestor for file changes
+     *
+     * @return map of relative path to text or resource location of files which need to be created
+     */
+    @NotNull
+    public Map<String, Object> update(@NotNull Project project, @NotNull AdditionalProjectFiles files, @NotNull Map<String, VirtualFile> virtualFiles, @Nullable Object requestor) {
+        myPendingHashes.clear();
+
+        HashMap<String, Object> wanted = files.getFiles();
+        ArrayList<ReusedFile> toDelete = new ArrayList<>();
+        LinkedHashMap<String, Object> toUpdate = new LinkedHashMap<>();
+        LinkedHashMap<String, Object> toCreate = new LinkedHashMap<>();
+
+        Iterator<Map.Entry<String, ReusedFile>> iterator = myFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ReusedFile> entry = iterator.next();
+            if (!wanted.containsKey(entry.getKey()) || !entry.getValue().file.isValid()) {
+                toDelete.add(entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        for (Map.Entry<String, Object> entry : wanted.entrySet()) {
+            String path = entry.getKey();
+            String hash = getHash(entry.getValue());
+            myPendingHashes.put(path, hash);
+
+            ReusedFile reusedFile = myFiles.get(path);
+            if (reusedFile == null) {
+                toCreate.put(path, entry.getValue());
+            } else if (reusedFile.isUnchanged(hash)) {
+                virtualFiles.put(path, reusedFile.file);
+            } else {
+                toUpdate.put(path, entry.getValue());
+            }
+        }
+
+        deleteFiles(project, toDelete, requestor);
+
+        if (!toUpdate.isEmpty()) {
+            WriteCommandAction.runWriteCommandAction(project, () -> {
+                for (Map.Entry<String, Object> entry : toUpdate.entrySet()) {
+                    String path = entry.getKey();
+                    VirtualFile file = myFiles.get(path).file;
+                    try {
+                        Object value = entry.getValue();
+                        if (value instanceof ResourceLocation) {
+                            BinaryAssets.copyTo((ResourceLocation) value, file, requestor);
+                        } else {
+                            VfsUtil.saveText(file, Objects.requireNonNull(AdditionalProjectFiles.getText(value)));
+                        }
+                        LOG.debug(String.format("Updated reused additional file %s %d", path, file.getModificationStamp()));
+                    } catch (IOException e) {
+                        LOG.error("Updating reused additional file " + path, e);
+                    }
+                }
+            });
+
+            PsiDocumentManager.getInstance(project).commitAllDocuments();
+
+            for (String path : toUpdate.keySet()) {
+                ReusedFile reusedFile = new ReusedFile(myPendingHashes.get(path), myFiles.get(path).file);
+                myFiles.put(path, reusedFile);
+                virtualFiles.put(path, reusedFile.file);
+            }
+        }
+
+        return toCreate;
+    }
+
+    /**
+     * Keep created files for following examples
+     *
+     * @param created map of relative path to virtual file of files returned by {@link #update} and created
+     */
+    public void retain(@NotNull Map<String, VirtualFile> created) {
+        for (Map.Entry<String, VirtualFile> entry : created.entrySet()) {
+            String hash = myPendingHashes.get(entry.getKey());
+            if (hash != null && entry.getValue() != null) {
+                myFiles.put(entry.getKey(), new ReusedFile(hash, entry.getValue()));
+            }
+        }
+
+        myPendingHashes.clear();
+    }
+
+    @NotNull
+    static String getHash(@NotNull Object value) {
+        if (value instanceof ResourceLocation) {
+            return BinaryAssets.getAsset((ResourceLocation) value).hash;
+        }
+        return ContentHash.of(AdditionalProjectFiles.getText(value));
+    }
+
+    private void deleteFiles(@NotNull Project project, @NotNull Iterable<ReusedFile> files, @Nullable Object requestor) {
+        if (!files.iterator().hasNext()) return;
+
+        EditorHistoryManager historyManager = EditorHistoryManager.getInstance(project);
+        WriteCommandAction.runWriteCommandAction(project, () -> {
+            for (ReusedFile reusedFile : files) {
+                VirtualFile virtualFile = reusedFile.file;
+                if (virtualFile.isValid()) {
+                    try {
+                        historyManager.removeFile(virtualFile);
+                        virtualFile.delete(requestor);
+                    } catch (IOException e) {
+                        LOG.error("Deleting reused additional file " + virtualFile.getPath(), e);
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Flat list of settings operations, used instead of nested {@link Consumer#andThen(Consumer)} chains when settings
+ * consumers of data holders are aggregated.
+ * <p>
+ * Composing two chains concatenates their operations, an operation instance which occurs more than once is only kept
+ * at its last position. Composed chains are cached by the identity of the composed consumers.
+ *
+ * @param <T> type of settings
+ */
+public final class SettingsConsumerChain<T> implements Consumer<T> {
+    private static final int MAX_CACHED = 1024;
+    private static final ConcurrentHashMap<CompositionKey, SettingsConsumerChain<?>> ourChains = new ConcurrentHashMap<>();
+
+    private final @NotNull List<Consumer<T>> myOperations;
+
+    private SettingsConsumerChain(@NotNull List<Consumer<T>> operations) {
+        myOperations = Collections.unmodifiableList(operations);
+    }
+
+    @Override
+    public void accept(T settings) {
+        for (Consumer<T> operation : myOperations) {
+            operation.accept(settings);
+        }
+    }
+
+    /**
+     * @return operations applied by this chain, in order
+     */
+    @NotNull
+    public List<Consumer<T>> getOperations() {
+        return myOperations;
+    }
+
+    /**
+     * Get operations a settings consumer will apply
+     *
+     * @param consumer settings consumer
+     * @param <T>      type of settings
+     *
+     * @return operations, the consumer itself if it is not a chain
+     */
+    @NotNull
+    public static <T> List<Consumer<T>> getOperations(@Nullable Consumer<T> consumer) {
+        if (consumer == null) return Collections.emptyList();
+        if (consumer instanceof SettingsConsumerChain) return ((SettingsConsumerChain<T>) consumer).myOperations;
+        return Collections.singletonList(consumer);
+    }
+
+    /**
+     * Compose settings consumers
+     *
+     * @param first  consumer applied first
+     * @param second consumer applied second
+     * @param <T>    type of settings
+     *
+     * @return consumer applying operations of both, flattened
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    public static <T> Consumer<T> compose(@Nullable Consumer<T> first, @Nullable Consumer<T> second) {
+        if (first == null || first == second) return second == null ? it -> {} : second;
+        if (second == null) return first;
+
+        CompositionKey key = new CompositionKey(first, second);
+        SettingsConsumerChain<?> chain = ourChains.get(key);
+        if (chain == null) {
+            // NOTE: only leaks if lambdas are created per example, which the options cache prevents
+            if (ourChains.size() >= MAX_CACHED) ourChains.clear();
+
+            chain = flatten(getOperations(first), getOperations(second));
+            ourChains.put(key, chain);
+        }
+        return (Consumer<T>) chain;
+    }
+
+    @NotNull
+    static <T> SettingsConsumerChain<T> flatten(@NotNull List<Consumer<T>> first, @NotNull List<Consumer<T>> second) {
+        ArrayList<Consumer<T>> all = new ArrayList<>(first.size() + second.size());
+        all.addAll(first);
+        all.addAll(second);
+
+        // keep last occurrence of each operation
+        IdentityHashMap<Consumer<T>, Boolean> seen = new IdentityHashMap<>();
+        ArrayList<Consumer<T>> operations = new ArrayList<>(all.size());
+        for (int i = all.size(); i-- > 0; ) {
+            Consumer<T> operation = all.get(i);
+            if (seen.put(operation, Boolean.TRUE) == null) operations.add(operation);
+        }
+        Collections.reverse(operations);
+        return new SettingsConsumerChain<>(operations);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SettingsConsumerChain[");
+        String sep = "";
+        for (Consumer<T> operation : myOperations) {
+            sb.append(sep).append(operation.getClass().getName());
+            sep = ", ";
+        }
+        return sb.append("]").toString();
+    }
+
+    private static class CompositionKey {
+        final Object first;
+        final Object second;
+
+        CompositionKey(@NotNull Object first, @NotNull Object second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CompositionKey)) return false;
+            CompositionKey other = (CompositionKey) o;
+            return first == other.first && second == other.second;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(first), System.identityHashCode(second));
+        }
+    }
+}
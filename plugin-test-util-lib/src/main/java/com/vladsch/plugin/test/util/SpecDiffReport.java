@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import com.vladsch.plugin.test.util.cases.CodeInsightFixtureSpecTestCase;
+import junit.framework.ComparisonFailure;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Comparison of expected and actual spec text which reports large failures as compact hunks
+ * <p>
+ * When expected and actual text together exceed -Dplugin.test.util.diff-threshold characters, default 100000,
+ * the comparison failure holds only the differing lines with context, each hunk headed by the spec example
+ * and file url of its first line. The full texts are written to build/plugin-test-util/diff.
+ * <p>
+ * Smaller texts are compared with {@link TestCase#assertEquals(String, String, String)} as before.
+ */
+public final class SpecDiffReport {
+    private static final Logger LOG = Logger.getInstance(SpecDiffReport.class);
+
+    final public static int CONTEXT_LINES = 3;
+    final public static String FENCE = "````````````````````````````````";
+    final public static String EXAMPLE_FENCE = FENCE + " example";
+
+    private SpecDiffReport() {
+    }
+
+    /**
+     * Assert expected and actual spec text are equal
+     *
+     * @param name     name used for full text files, usually the test class simple name
+     * @param example  spec example, full spec example for full spec text
+     * @param expected expected text
+     * @param actual   actual text
+     */
+    public static void assertEquals(@NotNull String name, @NotNull SpecExample example, @NotNull String expected, @NotNull String actual) {
+        if (expected.equals(actual)) return;
+
+        System.out.println(CodeInsightFixtureSpecTestCase.getExampleName(example) + " Test Failed, " + example.getFileUrlWithLineNumber());
+
+        if (expected.length() + actual.length() <= SpecTestProperties.getInt(SpecTestProperties.DIFF_THRESHOLD, 100_000)) {
+            TestCase.assertEquals("\n", expected, actual);
+            return;
+        }
+
+        List<String> expectedLines = TextDiff.lines(expected);
+        List<String> actualLines = TextDiff.lines(actual);
+        List<TextDiff.Hunk> hunks = TextDiff.diff(expectedLines, actualLines);
+        int maxHunks = SpecTestProperties.getInt(SpecTestProperties.DIFF_MAX_HUNKS, 20);
+
+        StringBuilder report = new StringBuilder();
+        StringBuilder expectedHunks = new StringBuilder();
+        StringBuilder actualHunks = new StringBuilder();
+
+        int count = 0;
+        for (TextDiff.Hunk hunk : hunks) {
+            if (count++ >= maxHunks) break;
+
+            int expectedStart = Math.max(0, hunk.expectedStart - CONTEXT_LINES);
+            int expectedEnd = Math.min(expectedLines.size(), hunk.expectedEnd + CONTEXT_LINES);
+            int actualStart = Math.max(0, hunk.actualStart - CONTEXT_LINES);
+            int actualEnd = Math.min(actualLines.size(), hunk.actualEnd + CONTEXT_LINES);
+
+            String exampleLabel = findExampleLabel(expectedLines, hunk.expectedStart);
+            SpecExample lineExample = new SpecExample(example.getResourceLocation(), getFileLine(example.isFullSpecExample(), example.getLineNumber(), hunk.expectedStart), null, example.getSection(), example.getExampleNumber(), "", "", null, null);
+            String header = hunk + " " + (exampleLabel != null ? "[" + exampleLabel + "] " : "") + lineExample.getFileUrlWithLineNumber() + "\n";
+
+            report.append(header);
+            for (int i = expectedStart; i < hunk.expectedStart; i++) appendLine(report, " ", expectedLines.get(i));
+            for (int i = hunk.expectedStart; i < hunk.expectedEnd; i++) appendLine(report, "-", expectedLines.get(i));
+            for (int i = hunk.actualStart; i < hunk.actualEnd; i++) appendLine(report, "+", actualLines.get(i));
+            for (int i = hunk.expectedEnd; i < expectedEnd; i++) appendLine(report, " ", expectedLines.get(i));
+
+            expectedHunks.append("<!-- ").append(header.trim()).append(" -->\n");
+            actualHunks.append("<!-- ").append(header.trim()).append(" -->\n");
+            for (int i = expectedStart; i < expectedEnd; i++) expectedHunks.append(expectedLines.get(i));
+            for (int i = actualStart; i < actualEnd; i++) actualHunks.append(actualLines.get(i));
+        }
+
+        String fileName = SpecTestProperties.toFileName(name + "_" + (example.isFullSpecExample() ? "Full_Spec" : SpecExampleTimings.getKey(example)));
+        File dir = SpecTestProperties.getBuildDir("diff");
+        File expectedFile = writeText(new File(dir, fileName + ".expected.md"), expected);
+        File actualFile = writeText(new File(dir, fileName + ".actual.md"), actual);
+
+        String message = String.format("%d differing hunk(s)%s, expected: %s, actual: %s", hunks.size(), hunks.size() > maxHunks ? ", first " + maxHunks + " shown" : "", expectedFile, actualFile);
+        System.out.println(message);
+        System.out.println(report);
+
+        throw new ComparisonFailure(message + "\n", expectedHunks.toString(), actualHunks.toString());
+    }
+
+    static void appendLine(@NotNull StringBuilder out, @NotNull String prefix, @NotNull String line) {
+        out.append(prefix).append(line);
+        if (!line.endsWith("\n")) out.append("\n");
+    }
+
+    /**
+     * Get spec file line of a line of compared text
+     *
+     * @param isFullSpec  true if the text is the full spec, its lines are spec file lines
+     * @param exampleLine line number of the example, example text lines are relative to it
+     * @param line        line index in the text
+     *
+     * @return spec file line
+     */
+    static int getFileLine(boolean isFullSpec, int exampleLine, int line) {
+        return isFullSpec ? line : exampleLine + line;
+    }
+
+    /**
+     * Find the label of the spec example containing the line
+     *
+     * @param lines expected lines
+     * @param line  line index
+     *
+     * @return example label, "Section: number" or null if not inside an example
+     */
+    @Nullable
+    static String findExampleLabel(@NotNull List<String> lines, int line) {
+        for (int i = Math.min(line, lines.size() - 1); i >= 0; i--) {
+            String text = lines.get(i);
+            if (text.startsWith(EXAMPLE_FENCE)) {
+                String label = text.substring(EXAMPLE_FENCE.length()).trim();
+                int pos = label.indexOf(" options(");
+                if (pos >= 0) label = label.substring(0, pos);
+                if (label.startsWith("(") && label.endsWith(")")) label = label.substring(1, label.length() - 1);
+                return label.isEmpty() ? null : label;
+            }
+
+            // closing fence of a previous example
+            if (i < line && text.trim().equals(FENCE)) return null;
+        }
+        return null;
+    }
+
+    @Nullable
+    static File writeText(@NotNull File file, @NotNull String text) {
+        try {
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            return file;
+        } catch (IOException e) {
+            LOG.warn("Cannot write diff file " + file, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.vladsch.flexmark.test.util.TestUtils;
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import org.apache.commons.io.input.CountingInputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-disk cache of parsed spec examples, stored under build/plugin-test-util/spec-cache
+ * <p>
+ * Each cache file is keyed by the spec resource path and validated against the hash of the spec text on load,
+ * a stale or unreadable cache file is ignored and re-written from a fresh parse.
+ * <p>
+ * With -Dplugin.test.util.lazy-examples=true loaded examples are {@link LazySpecExample} handles which read their
+ * text from the cache file when used.
+ * <p>
+ * Disable with -Dplugin.test.util.spec-cache=false
+ */
+public class SpecExampleCache {
+    private static final Logger LOG = Logger.getInstance(SpecExampleCache.class);
+
+    // NOTE: increment when the cache file format changes
+    private static final int MAGIC = 0x53504543;
+    private static final int VERSION = 1;
+
+    private final @NotNull ResourceLocation myLocation;
+    private final @NotNull File myCacheFile;
+
+    public SpecExampleCache(@NotNull ResourceLocation location) {
+        myLocation = location;
+        myCacheFile = new File(SpecTestProperties.getBuildDir("spec-cache"), SpecTestProperties.toFileName(location.getResourcePath()) + ".cache");
+    }
+
+    @NotNull
+    public File getCacheFile() {
+        return myCacheFile;
+    }
+
+    public static boolean isEnabled() {
+        return SpecTestProperties.getBoolean(SpecTestProperties.SPEC_CACHE, true);
+    }
+
+    /**
+     * Get parameterized test data for spec resource, the same as {@link TestUtils#getTestData(ResourceLocation)}
+     * but loaded from the cache if the spec has not changed since it was cached
+     *
+     * @param location spec resource location
+     *
+     * @return list of rows with the spec example at [0]
+     */
+    @NotNull
+    public static List<Object[]> getTestData(@NotNull ResourceLocation location) {
+        if (!isEnabled()) {
+            return TestUtils.getTestData(location);
+        }
+
+        return new SpecExampleCache(location).getTestData();
+    }
+
+    @NotNull
+    public List<Object[]> getTestData() {
+        String contentHash = ContentHash.of(myLocation.getResourceText());
+
+        List<Object[]> data = load(contentHash);
+        if (data == null) {
+            data = TestUtils.getTestData(myLocation);
+            save(contentHash, data);
+
+            if (LazySpecExample.isEnabled()) {
+                // NOTE: drop the parsed examples and use handles into the saved cache
+                List<Object[]> lazyData = load(contentHash);
+                if (lazyData != null) data = lazyData;
+            }
+        }
+        return data;
+    }
+
+    @Nullable
+    List<Object[]> load(@NotNull String contentHash) {
+        if (!myCacheFile.isFile()) return null;
+
+        boolean lazy = LazySpecExample.isEnabled();
+
+        try (CountingInputStream counting = new CountingInputStream(new BufferedInputStream(new FileInputStream(myCacheFile)));
+             DataInputStream in = new DataInputStream(counting)) {
+            if (!readHeader(in, myLocation, contentHash)) return null;
+
+            int count = in.readInt();
+            ArrayList<Object[]> data = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                data.add(new Object[] { readExample(in, lazy ? counting : null, contentHash) });
+            }
+            return data;
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Ignoring unreadable spec cache " + myCacheFile, e);
+            return null;
+        }
+    }
+
+    void save(@NotNull String contentHash, @NotNull List<Object[]> data) {
+        for (Object[] row : data) {
+            // only rows with a single spec example can be cached
+            if (row.length != 1 || !(row[0] instanceof SpecExample)) return;
+        }
+
+        try {
+            // NOTE: write to temp file and move so concurrent test forks never see a partial cache file
+            File tmpFile = File.createTempFile(myCacheFile.getName(), ".tmp", myCacheFile.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, myLocation.getResourcePath());
+                writeString(out, contentHash);
+                out.writeInt(data.size());
+                for (Object[] row : data) {
+                    writeExample(out, (SpecExample) row[0]);
+                }
+            }
+            Files.move(tmpFile.toPath(), myCacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOG.debug("Failed to write spec cache " + myCacheFile, e);
+        }
+    }
+
+    void writeExample(@NotNull DataOutputStream out, @NotNull SpecExample example) throws IOException {
+        out.writeBoolean(example.isFullSpecExample());
+        if (example.isFullSpecExample()) return;
+
+        out.writeInt(example.getLineNumber());
+        writeString(out, example.getOptionsSet());
+        writeString(out, example.getSection());
+        out.writeInt(example.getExampleNumber());
+        writeString(out, example.getSource());
+        writeString(out, example.getHtml());
+        writeString(out, example.getAst());
+        writeString(out, example.getComment());
+    }
+
+    /**
+     * Read and validate cache file header
+     *
+     * @param in          cache file input
+     * @param location    spec resource location
+     * @param contentHash spec content hash
+     *
+     * @return true if cache file is for the given spec content
+     */
+    static boolean readHeader(@NotNull DataInput in, @NotNull ResourceLocation location, @NotNull String contentHash) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) return false;
+        if (!location.getResourcePath().equals(readString(in))) return false;
+        return contentHash.equals(readString(in));
+    }
+
+    /**
+     * Read example from the cache file
+     *
+     * @param in          cache file input
+     * @param counting    counting stream of the input to create lazy examples, null to read the full example
+     * @param contentHash spec content hash, used by lazy examples to validate the cache file
+     *
+     * @return spec example
+     */
+    @NotNull
+    SpecExample readExample(@NotNull DataInputStream in, @Nullable CountingInputStream counting, @NotNull String contentHash) throws IOException {
+        boolean isFullSpec = in.readBoolean();
+        if (isFullSpec) {
+            // NOTE: full spec example is the NULL example with the spec resource location
+            return SpecExample.NULL.withResourceLocation(myLocation);
+        }
+
+        int lineNumber = in.readInt();
+        String optionsSet = readString(in);
+        String section = readString(in);
+        int exampleNumber = in.readInt();
+
+        if (counting != null) {
+            long offset = counting.getByteCount();
+            for (int i = 0; i < 4; i++) {
+                skipString(in);
+            }
+            return new LazySpecExample(myLocation, lineNumber, optionsSet, section, exampleNumber, myCacheFile, contentHash, offset);
+        }
+
+        String source = readString(in);
+        String html = readString(in);
+        String ast = readString(in);
+        String comment = readString(in);
+
+        return new SpecExample(myLocation, lineNumber, optionsSet, section, exampleNumber, source == null ? "" : source, html == null ? "" : html, ast, comment);
+    }
+
+    static void writeString(@NotNull DataOutputStream out, @Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            // NOTE: writeUTF is limited to 64k which some examples exceed
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static void skipString(@NotNull DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length > 0 && in.skipBytes(length) != length) {
+            throw new IOException("Unexpected end of spec cache");
+        }
+    }
+
+    @Nullable
+    static String readString(@NotNull DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.vladsch.flexmark.test.util.TestUtils;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.flexmark.util.data.DataSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Per test class cache of resolved example options, keyed by options set text
+ * <p>
+ * Example options, options aggregated with the default options and options with appended default example options
+ * are resolved once per distinct options set. This relies on a test class having the same options map and default
+ * options for all its instances, which is the case for test cases created by the parameterized runner.
+ * <p>
+ * Disable with -Dplugin.test.util.options-cache=false
+ */
+public final class SpecExampleOptions {
+    private static final ConcurrentHashMap<Class<?>, SpecExampleOptions> ourInstances = new ConcurrentHashMap<>();
+
+    // NOTE: concurrent maps do not allow null values
+    private static final DataHolder NULL_OPTIONS = new DataSet();
+
+    private final ConcurrentHashMap<String, DataHolder> myOptions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DataHolder> myResolved = new ConcurrentHashMap<>();
+    private final IdentityHashMap<DataHolder, Map<String, DataHolder>> myAppended = new IdentityHashMap<>();
+
+    private SpecExampleOptions() {
+    }
+
+    public static boolean isEnabled() {
+        return SpecTestProperties.getBoolean(SpecTestProperties.OPTIONS_CACHE, true);
+    }
+
+    @Nullable
+    public static SpecExampleOptions getInstance(@NotNull Class<?> testClass) {
+        return isEnabled() ? ourInstances.computeIfAbsent(testClass, key -> new SpecExampleOptions()) : null;
+    }
+
+    @NotNull
+    static String getKey(@Nullable String optionsSet) {
+        return optionsSet == null ? "" : optionsSet;
+    }
+
+    /**
+     * Get example options, same as {@link TestUtils#getOptions(SpecExample, String, Function)} for the example options set
+     *
+     * @param example         spec example
+     * @param optionsProvider options provider
+     *
+     * @return options or null if the example has no options
+     */
+    @Nullable
+    public DataHolder getOptions(@NotNull SpecExample example, @NotNull Function<String, DataHolder> optionsProvider) {
+        // NOTE: ignored option throws and is not cached
+        DataHolder options = myOptions.computeIfAbsent(getKey(example.getOptionsSet()), key -> {
+            DataHolder exampleOptions = TestUtils.getOptions(example, example.getOptionsSet(), optionsProvider);
+            return exampleOptions == null ? NULL_OPTIONS : exampleOptions.toImmutable();
+        });
+        return options == NULL_OPTIONS ? null : options;
+    }
+
+    /**
+     * Get example options aggregated with default options
+     *
+     * @param example        spec example
+     * @param exampleOptions example options
+     * @param defaultOptions default options of the test
+     *
+     * @return aggregated options, cached when example options are the ones returned by {@link #getOptions}
+     */
+    @NotNull
+    public DataHolder getResolvedOptions(@NotNull SpecExample example, @Nullable DataHolder exampleOptions, @NotNull DataHolder defaultOptions) {
+        if (exampleOptions == null) return defaultOptions;
+
+        String key = getKey(example.getOptionsSet());
+        if (myOptions.get(key) != exampleOptions) {
+            return DataSet.aggregate(defaultOptions, exampleOptions);
+        }
+        return myResolved.computeIfAbsent(key, k -> DataSet.aggregate(defaultOptions, exampleOptions));
+    }
+
+    /**
+     * Test if options were created by this cache
+     *
+     * @param options options
+     *
+     * @return true if cached options
+     */
+    public boolean isCached(@Nullable DataHolder options) {
+        if (options == null) return false;
+
+        for (DataHolder cached : myResolved.values()) {
+            if (cached == options) return true;
+        }
+        for (DataHolder cached : myOptions.values()) {
+            if (cached == options) return true;
+        }
+        synchronized (myAppended) {
+            for (Map<String, DataHolder> appended : myAppended.values()) {
+                for (DataHolder cached : appended.values()) {
+                    if (cached == options) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get options with appended options text, computed once for cached options
+     *
+     * @param options     cached options
+     * @param optionsText options text
+     * @param compute     function to compute the options if not cached
+     *
+     * @return options
+     */
+    @Nullable
+    public DataHolder getAppendedOptions(@NotNull DataHolder options, @NotNull String optionsText, @NotNull Function<String, DataHolder> compute) {
+        synchronized (myAppended) {
+            Map<String, DataHolder> appended = myAppended.computeIfAbsent(options, key -> new HashMap<>());
+            DataHolder modOptions = appended.get(optionsText);
+            if (modOptions == null) {
+                modOptions = compute.apply(optionsText);
+                appended.put(optionsText, modOptions == null ? NULL_OPTIONS : modOptions);
+            }
+            return modOptions == NULL_OPTIONS ? null : modOptions;
+        }
+    }
+}
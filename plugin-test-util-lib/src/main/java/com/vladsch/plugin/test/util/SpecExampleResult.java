@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Actual result of running a spec example, as used for the full spec
+ */
+public final class SpecExampleResult {
+    private final @NotNull String mySource;
+    private final @NotNull String myHtml;
+    private final @Nullable String myAst;
+    private final @NotNull String myTimings;
+
+    /**
+     * @param source source used for the parse, after NO_FILE_EOL processing
+     * @param html   actual html
+     * @param ast    actual ast, null if the example has no ast section
+     */
+    public SpecExampleResult(@NotNull String source, @NotNull String html, @Nullable String ast) {
+        this(source, html, ast, "");
+    }
+
+    /**
+     * @param source  source used for the parse, after NO_FILE_EOL processing
+     * @param html    actual html
+     * @param ast     actual ast, null if the example has no ast section
+     * @param timings EMBED_TIMED latency text, empty if none
+     */
+    public SpecExampleResult(@NotNull String source, @NotNull String html, @Nullable String ast, @NotNull String timings) {
+        mySource = source;
+        myHtml = html;
+        myAst = ast;
+        myTimings = timings;
+    }
+
+    @NotNull
+    public String getSource() {
+        return mySource;
+    }
+
+    @NotNull
+    public String getHtml() {
+        return myHtml;
+    }
+
+    @Nullable
+    public String getAst() {
+        return myAst;
+    }
+
+    /**
+     * @return EMBED_TIMED latency text, empty if none
+     */
+    @NotNull
+    public String getTimings() {
+        return myTimings;
+    }
+}
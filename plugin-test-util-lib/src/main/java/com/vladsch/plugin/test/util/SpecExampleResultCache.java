@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.vladsch.flexmark.test.util.TestUtils;
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.flexmark.util.data.DataKeyBase;
+import com.vladsch.plugin.test.util.cases.SpecTest;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of passed spec examples, stored under build/plugin-test-util/result-cache
+ * <p>
+ * An example is keyed by the hash of its inputs: test class, example section, number, source, expected html and ast,
+ * options set, resolved options and additional project files. The cache file for a test class and spec is
+ * discarded when the classpath fingerprint changes so any change to plugin or test code runs all examples.
+ * <p>
+ * Resolved option values which are not plain values, like consumer lambdas, are hashed by key name only, their code
+ * is covered by the classpath fingerprint and their parameters by the options set.
+ * <p>
+ * Enable with -Dplugin.test.util.result-cache=true
+ */
+public final class SpecExampleResultCache {
+    private static final Logger LOG = Logger.getInstance(SpecExampleResultCache.class);
+    private static final ConcurrentHashMap<String, SpecExampleResultCache> ourCaches = new ConcurrentHashMap<>();
+    private static @Nullable String ourClasspathFingerprint;
+
+    private final @NotNull String myTestClassName;
+    private final @NotNull File myCacheFile;
+    private final Set<String> myPassed = ConcurrentHashMap.newKeySet();
+
+    private SpecExampleResultCache(@NotNull Class<?> testClass, @NotNull ResourceLocation location) {
+        myTestClassName = testClass.getName();
+        myCacheFile = new File(SpecTestProperties.getBuildDir("result-cache"), SpecTestProperties.toFileName(myTestClassName + "_" + location.getResourcePath()) + ".txt");
+        load();
+    }
+
+    public static boolean isEnabled() {
+        return SpecTestProperties.getBoolean(SpecTestProperties.RESULT_CACHE, false);
+    }
+
+    @NotNull
+    public static SpecExampleResultCache getInstance(@NotNull Class<?> testClass, @NotNull ResourceLocation location) {
+        return ourCaches.computeIfAbsent(testClass.getName() + "|" + location.getResourcePath(), key -> new SpecExampleResultCache(testClass, location));
+    }
+
+    @NotNull
+    public File getCacheFile() {
+        return myCacheFile;
+    }
+
+    /**
+     * Get the cache key for the example
+     *
+     * @param example         spec example
+     * @param source          source used for the parse, after NO_FILE_EOL processing
+     * @param options         example options as given by the options set, null if none
+     * @param resolvedOptions options used for the example spec renderer
+     *
+     * @return key or null if the example results should not be cached
+     */
+    @Nullable
+    public String getKey(@NotNull SpecExample example, @NotNull String source, @Nullable DataHolder options, @NotNull DataHolder resolvedOptions) {
+        // NOTE: failing examples pass by throwing, timed examples are run for their output
+        if (options != null && (TestUtils.FAIL.get(options) || TestUtils.TIMED.get(options) || TestUtils.EMBED_TIMED.get(options))) return null;
+
+        ContentHash hash = new ContentHash()
+                .add(myTestClassName)
+                .add(example.getSection())
+                .add(example.getExampleNumber())
+                .add(source)
+                .add(example.getHtml())
+                .add(example.getAst())
+                .add(example.getOptionsSet());
+
+        addOptions(hash, resolvedOptions);
+
+        AdditionalProjectFiles additionalFiles = new AdditionalProjectFiles();
+        SpecTest.ADDITIONAL_PROJECT_FILES_OPTION.setInstanceData(additionalFiles, resolvedOptions);
+
+        for (Map.Entry<String, Object> entry : new TreeMap<>(additionalFiles.getFiles()).entrySet()) {
+            hash.add(entry.getKey());
+
+            Object value = entry.getValue();
+            try {
+                if (value instanceof ResourceLocation) {
+                    hash.add(BinaryAssets.getAsset((ResourceLocation) value).hash);
+                } else {
+                    hash.add(AdditionalProjectFiles.getText(value));
+                }
+            } catch (IllegalStateException e) {
+                // NOTE: cannot hash content, treat as not cached
+                return null;
+            }
+        }
+
+        return hash.toHex();
+    }
+
+    /**
+     * Add option values to hash in key name order
+     *
+     * @param hash    content hash
+     * @param options options
+     */
+    static void addOptions(@NotNull ContentHash hash, @NotNull DataHolder options) {
+        TreeMap<String, Object> values = new TreeMap<>();
+        for (Map.Entry<? extends DataKeyBase<?>, Object> entry : options.getAll().entrySet()) {
+            values.put(entry.getKey().getName(), entry.getValue());
+        }
+
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            hash.add(entry.getKey());
+            hash.add(stableValue(entry.getValue()));
+        }
+    }
+
+    @NotNull
+    static String stableValue(@Nullable Object value) {
+        if (value == null) return "null";
+
+        if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+            return value.getClass().getSimpleName() + ":" + value;
+        }
+
+        if (value instanceof Collection) {
+            StringBuilder sb = new StringBuilder("[");
+            for (Object item : (Collection<?>) value) {
+                sb.append(stableValue(item)).append(",");
+            }
+            return sb.append("]").toString();
+        }
+
+        if (value.getClass().isArray()) {
+            StringBuilder sb = new StringBuilder("[");
+            int iMax = Array.getLength(value);
+            for (int i = 0; i < iMax; i++) {
+                sb.append(stableValue(Array.get(value, i))).append(",");
+            }
+            return sb.append("]").toString();
+        }
+
+        // NOTE: lambda class names are not stable between runs, object instances only by class
+        String className = value.getClass().getName();
+        int pos = className.indexOf("$$Lambda");
+        return pos >= 0 ? className.substring(0, pos) + "$$Lambda" : className;
+    }
+
+    public boolean isPassed(@NotNull String key) {
+        return myPassed.contains(key);
+    }
+
+    /**
+     * Record example as passed, appended to cache file so it survives a crashed or killed test run
+     *
+     * @param key example key
+     */
+    public synchronized void passed(@NotNull String key) {
+        if (!myPassed.add(key)) return;
+
+        boolean isNew = !myCacheFile.exists();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(myCacheFile, true), StandardCharsets.UTF_8)) {
+            if (isNew) writer.append(getClasspathFingerprint()).append('\n');
+            writer.append(key).append('\n');
+        } catch (IOException e) {
+            LOG.warn("Cannot write result cache file " + myCacheFile, e);
+        }
+    }
+
+    private void load() {
+        if (!myCacheFile.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(myCacheFile), StandardCharsets.UTF_8))) {
+            String fingerprint = reader.readLine();
+            if (getClasspathFingerprint().equals(fingerprint)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) myPassed.add(line);
+                }
+                return;
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot read result cache file " + myCacheFile, e);
+        }
+
+        // NOTE: classes changed or unreadable, start over
+        myPassed.clear();
+        if (!myCacheFile.delete()) {
+            LOG.warn("Cannot delete result cache file " + myCacheFile);
+        }
+    }
+
+    /**
+     * Fingerprint of the test classpath, computed once per JVM from path, size and modification time of jars and
+     * class directory files. Markdown files in class directories are skipped because they are spec files, whose
+     * examples are hashed by content.
+     *
+     * @return classpath fingerprint
+     */
+    @NotNull
+    public static synchronized String getClasspathFingerprint() {
+        if (ourClasspathFingerprint == null) {
+            ContentHash hash = new ContentHash();
+            for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                if (!entry.isEmpty()) addFingerprint(hash, new File(entry));
+            }
+            ourClasspathFingerprint = hash.toHex();
+        }
+        return ourClasspathFingerprint;
+    }
+
+    private static void addFingerprint(@NotNull ContentHash hash, @NotNull File file) {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files == null) return;
+
+            ArrayList<File> sorted = new ArrayList<>(Arrays.asList(files));
+            sorted.sort(null);
+
+            for (File child : sorted) {
+                addFingerprint(hash, child);
+            }
+        } else if (file.isFile() && !file.getName().endsWith(".md")) {
+            hash.add(file.getPath());
+            hash.add(file.length());
+            hash.add(file.lastModified());
+        }
+    }
+}
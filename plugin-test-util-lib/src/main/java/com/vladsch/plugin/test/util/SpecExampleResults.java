@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.vladsch.flexmark.test.util.SpecExampleParse;
+import com.vladsch.flexmark.test.util.SpecExampleRenderer;
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.plugin.test.util.cases.CodeInsightFixtureSpecTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Results of spec examples run by the parameterized tests of a test class, used by the full spec to avoid running
+ * the examples a second time.
+ * <p>
+ * Results are not reused for test classes which override {@link CodeInsightFixtureSpecTestCase#checkExample(SpecExample)}
+ * or {@link CodeInsightFixtureSpecTestCase#addFullSpecExample}, these need the full spec example to be run.
+ * <p>
+ * Disable with -Dplugin.test.util.reuse-results=false, also disabled by -Dplugin.test.util.lazy-examples=true
+ */
+public final class SpecExampleResults {
+    private static final ConcurrentHashMap<String, SpecExampleResults> ourResults = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Class<?>, Boolean> ourReusable = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Entry> myResults = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        final @Nullable String optionsSet;
+        final @NotNull String source;
+        final @NotNull SpecExampleResult result;
+
+        Entry(@Nullable String optionsSet, @NotNull String source, @NotNull SpecExampleResult result) {
+            this.optionsSet = optionsSet;
+            this.source = source;
+            this.result = result;
+        }
+    }
+
+    private SpecExampleResults() {
+    }
+
+    public static boolean isEnabled() {
+        // NOTE: results hold example text strongly, which lazy examples are meant to release
+        return SpecTestProperties.getBoolean(SpecTestProperties.REUSE_RESULTS, true) && !LazySpecExample.isEnabled();
+    }
+
+    /**
+     * Test class results can be reused if the class does not override full spec hooks
+     *
+     * @param testClass test class
+     *
+     * @return true if results can be reused
+     */
+    public static boolean isReusable(@NotNull Class<?> testClass) {
+        return ourReusable.computeIfAbsent(testClass, key ->
+                !isOverridden(key, "checkExample", SpecExample.class)
+                        && !isOverridden(key, "addFullSpecExample", SpecExampleRenderer.class, SpecExampleParse.class, DataHolder.class, boolean.class, String.class, String.class));
+    }
+
+    static boolean isOverridden(@NotNull Class<?> testClass, @NotNull String name, @NotNull Class<?>... parameterTypes) {
+        try {
+            Method method = testClass.getMethod(name, parameterTypes);
+            return method.getDeclaringClass() != CodeInsightFixtureSpecTestCase.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    @NotNull
+    public static SpecExampleResults getInstance(@NotNull Class<?> testClass, @NotNull ResourceLocation location) {
+        return ourResults.computeIfAbsent(testClass.getName() + "|" + location.getResourcePath(), key -> new SpecExampleResults());
+    }
+
+    /**
+     * Move the full spec example row to the end of the test data so that it runs after all its examples
+     * and can use their results
+     *
+     * @param data test data
+     *
+     * @return test data
+     */
+    @NotNull
+    public static List<Object[]> fullSpecLast(@NotNull List<Object[]> data) {
+        ArrayList<Object[]> fullSpecRows = new ArrayList<>();
+        ArrayList<Object[]> rows = new ArrayList<>(data.size());
+        for (Object[] row : data) {
+            if (row.length > 0 && row[0] instanceof SpecExample && ((SpecExample) row[0]).isFullSpecExample()) fullSpecRows.add(row);
+            else rows.add(row);
+        }
+        rows.addAll(fullSpecRows);
+        return rows;
+    }
+
+    @NotNull
+    static String getKey(@NotNull SpecExample example) {
+        return example.getSection() + ": " + example.getExampleNumber();
+    }
+
+    public void put(@NotNull SpecExample example, @NotNull SpecExampleResult result) {
+        myResults.put(getKey(example), new Entry(example.getOptionsSet(), example.getSource(), result));
+    }
+
+    /**
+     * Get result for example, if the example source and options match the ones used for the result
+     *
+     * @param example spec example
+     *
+     * @return result or null
+     */
+    @Nullable
+    public SpecExampleResult get(@NotNull SpecExample example) {
+        Entry entry = myResults.get(getKey(example));
+        if (entry != null && Objects.equals(entry.optionsSet, example.getOptionsSet()) && entry.source.equals(example.getSource())) {
+            return entry.result;
+        }
+        return null;
+    }
+
+    public int size() {
+        return myResults.size();
+    }
+
+    public void clear() {
+        myResults.clear();
+    }
+}
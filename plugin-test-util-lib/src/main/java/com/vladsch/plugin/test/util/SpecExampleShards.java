@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Select the spec examples of one shard so a large spec can be split between test JVMs
+ * <p>
+ * A gradle fork runs whole test classes, so each shard needs its own test task or CI job with
+ * -Dplugin.test.util.shard-index=i and -Dplugin.test.util.shard-count=n, index is 0 based.
+ * <p>
+ * By default examples are assigned by a stable hash of their section and number. With
+ * -Dplugin.test.util.shard-by-timings=true examples are assigned by recorded run time, see {@link SpecExampleTimings},
+ * longest first to the least loaded shard, examples without a recorded time use the average. All shards must
+ * use the same timings file or examples will be missed or run twice.
+ * <p>
+ * The full spec example runs every example of the spec, so it is not part of any of the n shards. It has its own
+ * shard, run with -Dplugin.test.util.shard-index=n, which contains only the full spec example. Running it is optional
+ * and takes about as long as an unsharded run, results of examples are not shared between shard JVMs.
+ */
+public final class SpecExampleShards {
+    private SpecExampleShards() {
+    }
+
+    public static int getShardCount() {
+        return SpecTestProperties.getInt(SpecTestProperties.SHARD_COUNT, 1);
+    }
+
+    public static int getShardIndex() {
+        return SpecTestProperties.getInt(SpecTestProperties.SHARD_INDEX, 0);
+    }
+
+    public static boolean isEnabled() {
+        return getShardCount() > 1;
+    }
+
+    /**
+     * Select test data rows of the current shard, shard index equal to shard count selects only the full spec example
+     *
+     * @param location spec resource location
+     * @param data     test data with spec example at [0]
+     *
+     * @return rows of the current shard, in original order
+     */
+    @NotNull
+    public static List<Object[]> select(@NotNull ResourceLocation location, @NotNull List<Object[]> data) {
+        int shardCount = getShardCount();
+        int shardIndex = getShardIndex();
+
+        if (shardCount <= 1) return data;
+
+        if (shardIndex < 0 || shardIndex > shardCount) {
+            throw new IllegalStateException("System property '" + SpecTestProperties.SHARD_INDEX + "' must be in range [0, " + shardCount + "], got: " + shardIndex);
+        }
+
+        int[] shards = SpecTestProperties.getBoolean(SpecTestProperties.SHARD_BY_TIMINGS, false)
+                ? assignByTimings(SpecExampleTimings.getInstance(location), data, shardCount)
+                : assignByHash(data, shardCount);
+
+        ArrayList<Object[]> rows = new ArrayList<>();
+        int iMax = data.size();
+        for (int i = 0; i < iMax; i++) {
+            if (shards[i] == shardIndex) rows.add(data.get(i));
+        }
+        return rows;
+    }
+
+    @NotNull
+    static SpecExample getExample(@NotNull Object[] row) {
+        return row.length > 0 && row[0] instanceof SpecExample ? (SpecExample) row[0] : SpecExample.NULL;
+    }
+
+    static int[] assignByHash(@NotNull List<Object[]> data, int shardCount) {
+        int[] shards = new int[data.size()];
+        int iMax = data.size();
+        for (int i = 0; i < iMax; i++) {
+            SpecExample example = getExample(data.get(i));
+            // NOTE: String.hashCode() is specified so it is the same in all JVMs
+            shards[i] = example.isFullSpecExample() ? shardCount : Math.floorMod(SpecExampleTimings.getKey(example).hashCode(), shardCount);
+        }
+        return shards;
+    }
+
+    static int[] assignByTimings(@NotNull SpecExampleTimings timings, @NotNull List<Object[]> data, int shardCount) {
+        int iMax = data.size();
+        int[] shards = new int[iMax];
+        long[] costs = new long[iMax];
+        long[] loads = new long[shardCount];
+
+        long total = 0;
+        int recorded = 0;
+        for (int i = 0; i < iMax; i++) {
+            // NOTE: full spec timing is the sum of all examples and is not used
+            if (getExample(data.get(i)).isFullSpecExample()) continue;
+
+            Long timing = timings.getTiming(getExample(data.get(i)));
+            if (timing != null) {
+                costs[i] = timing;
+                total += timing;
+                recorded++;
+            } else {
+                costs[i] = -1;
+            }
+        }
+
+        long average = recorded == 0 ? 1 : Math.max(1, total / recorded);
+        ArrayList<Integer> order = new ArrayList<>(iMax);
+        for (int i = 0; i < iMax; i++) {
+            if (getExample(data.get(i)).isFullSpecExample()) {
+                shards[i] = shardCount;
+            } else {
+                if (costs[i] < 0) costs[i] = average;
+                order.add(i);
+            }
+        }
+
+        // longest first, ties in spec order so all shards compute the same assignment
+        order.sort((i1, i2) -> costs[i1] != costs[i2] ? Long.compare(costs[i2], costs[i1]) : Integer.compare(i1, i2));
+
+        for (int i : order) {
+            int shard = 0;
+            for (int s = 1; s < shardCount; s++) {
+                if (loads[s] < loads[shard]) shard = s;
+            }
+            shards[i] = shard;
+            loads[shard] += costs[i];
+        }
+        return shards;
+    }
+}
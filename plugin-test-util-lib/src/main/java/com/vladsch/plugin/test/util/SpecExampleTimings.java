@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recorded run times of spec examples, stored under build/plugin-test-util/timings with one file per spec
+ * <p>
+ * Each run appends "example key TAB microseconds" lines, the last entry for an example is used. The file is
+ * compacted when loaded.
+ * <p>
+ * Enable recording with -Dplugin.test.util.record-timings=true
+ */
+public final class SpecExampleTimings {
+    private static final Logger LOG = Logger.getInstance(SpecExampleTimings.class);
+    private static final ConcurrentHashMap<String, SpecExampleTimings> ourTimings = new ConcurrentHashMap<>();
+
+    final public static String FULL_SPEC_KEY = "Full Spec";
+
+    private final @NotNull File myTimingsFile;
+    private final Map<String, Long> myTimings = new LinkedHashMap<>();
+
+    private SpecExampleTimings(@NotNull ResourceLocation location) {
+        myTimingsFile = new File(SpecTestProperties.getBuildDir("timings"), SpecTestProperties.toFileName(location.getResourcePath()) + ".txt");
+        load();
+    }
+
+    public static boolean isRecordingEnabled() {
+        return SpecTestProperties.getBoolean(SpecTestProperties.RECORD_TIMINGS, false);
+    }
+
+    @NotNull
+    public static SpecExampleTimings getInstance(@NotNull ResourceLocation location) {
+        return ourTimings.computeIfAbsent(location.getResourcePath(), key -> new SpecExampleTimings(location));
+    }
+
+    @NotNull
+    public static String getKey(@NotNull SpecExample example) {
+        return example.isFullSpecExample() ? FULL_SPEC_KEY : example.getSection() + ": " + example.getExampleNumber();
+    }
+
+    @NotNull
+    public File getTimingsFile() {
+        return myTimingsFile;
+    }
+
+    /**
+     * @param example spec example
+     *
+     * @return recorded time in microseconds or null if not recorded
+     */
+    @Nullable
+    public synchronized Long getTiming(@NotNull SpecExample example) {
+        return myTimings.get(getKey(example));
+    }
+
+    public synchronized int size() {
+        return myTimings.size();
+    }
+
+    /**
+     * Record run time of an example
+     *
+     * @param example spec example
+     * @param nanos   elapsed time in nanoseconds
+     */
+    public synchronized void record(@NotNull SpecExample example, long nanos) {
+        String key = getKey(example);
+        long micros = nanos / 1000;
+        myTimings.put(key, micros);
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(myTimingsFile, true), StandardCharsets.UTF_8)) {
+            writer.append(key).append('\t').append(String.valueOf(micros)).append('\n');
+        } catch (IOException e) {
+            LOG.warn("Cannot write timings file " + myTimingsFile, e);
+        }
+    }
+
+    private void load() {
+        if (!myTimingsFile.exists()) return;
+
+        int lines = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(myTimingsFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int pos = line.lastIndexOf('\t');
+                if (pos <= 0) continue;
+
+                try {
+                    String key = line.substring(0, pos);
+                    // NOTE: keep file order of last entry for stable output
+                    myTimings.remove(key);
+                    myTimings.put(key, Long.parseLong(line.substring(pos + 1)));
+                    lines++;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot read timings file " + myTimingsFile, e);
+            return;
+        }
+
+        if (lines > myTimings.size() * 2) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(myTimingsFile), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : myTimings.entrySet()) {
+                writer.append(entry.getKey()).append('\t').append(String.valueOf(entry.getValue())).append('\n');
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot write timings file " + myTimingsFile, e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Latency of an operation repeated after warmup, used by spec renderers for examples with TIMED or EMBED_TIMED options
+ */
+public final class SpecLatency {
+    final public static String FORMAT = "%s: %d iterations, min %.3f ms, median %.3f ms, p90 %.3f ms, p99 %.3f ms";
+
+    private SpecLatency() {
+    }
+
+    /**
+     * Measure latency of an operation
+     *
+     * @param operation  operation name used in the result text
+     * @param warmup     number of runs before measurement
+     * @param iterations number of measured runs
+     * @param setup      run before each run and not measured, null if none
+     * @param runnable   operation
+     *
+     * @return latency text, see {@link #FORMAT}
+     */
+    @NotNull
+    public static String measure(@NotNull String operation, int warmup, int iterations, @Nullable Runnable setup, @NotNull Runnable runnable) {
+        if (iterations <= 0) {
+            throw new IllegalStateException("TIMED_ITERATIONS should be > 0, got " + iterations);
+        }
+
+        for (int i = 0; i < warmup; i++) {
+            if (setup != null) setup.run();
+            runnable.run();
+        }
+
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            if (setup != null) setup.run();
+            long start = System.nanoTime();
+            runnable.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(nanos);
+        return String.format(FORMAT, operation, iterations,
+                nanos[0] / 1e6, percentile(nanos, 0.5) / 1e6, percentile(nanos, 0.9) / 1e6, percentile(nanos, 0.99) / 1e6);
+    }
+
+    /**
+     * Nearest rank percentile
+     *
+     * @param sorted     sorted values, not empty
+     * @param percentile percentile in range 0 to 1
+     *
+     * @return value
+     */
+    static long percentile(@NotNull long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detector of heap growth and leaked objects per example
+ * <p>
+ * Retained heap is measured after a forced GC at the start of each example. Consecutive examples after which retained
+ * heap keeps growing are reported as a leak. Editor, file, document and renderer of an example are held weakly from
+ * finalizeRender and must be collected by the end of the following example, when the fixture no longer references
+ * them, or by the end of the test class. Reports are written to build/plugin-test-util/leaks and printed after the last
+ * example of the class.
+ * <p>
+ * Enable with -Dplugin.test.util.leak-detection=true, number of consecutive examples with growth reported as a leak is
+ * set with -Dplugin.test.util.leak-growth-examples, default 10
+ */
+public final class SpecLeakDetector {
+    private static final Logger LOG = Logger.getInstance(SpecLeakDetector.class);
+
+    static class Tracked {
+        final @NotNull String exampleKey;
+        final @NotNull String className;
+        final @NotNull WeakReference<Object> reference;
+
+        Tracked(@NotNull String exampleKey, @NotNull Object object) {
+            this.exampleKey = exampleKey;
+            this.className = object.getClass().getName();
+            this.reference = new WeakReference<>(object);
+        }
+    }
+
+    static class ClassLeaks {
+        final @NotNull ArrayList<String> exampleKeys = new ArrayList<>();
+        final @NotNull ArrayList<Long> retainedHeap = new ArrayList<>();
+        final @NotNull LinkedHashMap<String, List<String>> survivors = new LinkedHashMap<>();
+    }
+
+    // NOTE: examples run one at a time on the EDT
+    private static final LinkedHashMap<Class<?>, ClassLeaks> ourClassLeaks = new LinkedHashMap<>();
+    private static @Nullable ClassLeaks ourCurrent;
+    private static @Nullable String ourCurrentKey;
+    private static @NotNull ArrayList<Tracked> ourTracked = new ArrayList<>();
+    private static @NotNull ArrayList<Tracked> ourPending = new ArrayList<>();
+    private static @Nullable ClassLeaks ourPendingClass;
+
+    private SpecLeakDetector() {
+    }
+
+    public static boolean isEnabled() {
+        return SpecTestProperties.getBoolean(SpecTestProperties.LEAK_DETECTION, false);
+    }
+
+    /**
+     * Measure retained heap at the start of an example
+     *
+     * @param testClass test class
+     * @param example   spec example
+     */
+    public static void startExample(@NotNull Class<?> testClass, @NotNull SpecExample example) {
+        if (!isEnabled()) return;
+
+        ClassLeaks classLeaks = ourClassLeaks.computeIfAbsent(testClass, key -> new ClassLeaks());
+        String key = SpecExampleTimings.getKey(example);
+        classLeaks.exampleKeys.add(key);
+        classLeaks.retainedHeap.add(getRetainedHeap());
+
+        ourCurrent = classLeaks;
+        ourCurrentKey = key;
+    }
+
+    /**
+     * Track objects of the current example which must be collected after the example is finalized
+     *
+     * @param objects objects, null values are ignored
+     */
+    public static void track(@Nullable Object... objects) {
+        String key = ourCurrentKey;
+        if (key == null) return;
+
+        for (Object object : objects) {
+            if (object != null) ourTracked.add(new Tracked(key, object));
+        }
+    }
+
+    /**
+     * Finish the current example, objects of the previous example are checked since the fixture no longer references
+     * them
+     */
+    public static void finishExample() {
+        ClassLeaks current = ourCurrent;
+        if (current == null) return;
+
+        checkPending();
+        ourPending = ourTracked;
+        ourPendingClass = current;
+        ourTracked = new ArrayList<>();
+        ourCurrent = null;
+        ourCurrentKey = null;
+    }
+
+    /**
+     * Write reports and print summary for all test classes, called after the last example of a test class and after
+     * its fixture is torn down
+     */
+    public static void report() {
+        if (ourClassLeaks.isEmpty()) return;
+
+        checkPending();
+        long retainedHeap = getRetainedHeap();
+
+        int growthExamples = Math.max(1, SpecTestProperties.getInt(SpecTestProperties.LEAK_GROWTH_EXAMPLES, 10));
+        for (Map.Entry<Class<?>, ClassLeaks> entry : ourClassLeaks.entrySet()) {
+            String name = entry.getKey().getSimpleName();
+            String report = getReport(name, entry.getValue(), retainedHeap, growthExamples);
+            if (report == null) continue;
+
+            SpecPhaseTimings.writeText(new File(SpecTestProperties.getBuildDir("leaks"), SpecTestProperties.toFileName(name) + ".txt"), report);
+            LOG.warn(report);
+            System.out.println(report);
+        }
+
+        ourClassLeaks.clear();
+    }
+
+    static void checkPending() {
+        ClassLeaks classLeaks = ourPendingClass;
+        if (classLeaks == null || ourPending.isEmpty()) return;
+
+        forceGc();
+        for (Tracked tracked : ourPending) {
+            if (tracked.reference.get() != null) {
+                classLeaks.survivors.computeIfAbsent(tracked.exampleKey, key -> new ArrayList<>()).add(tracked.className);
+            }
+        }
+
+        ourPending = new ArrayList<>();
+        ourPendingClass = null;
+    }
+
+    /**
+     * Get report of a test class
+     *
+     * @param name           test class name
+     * @param classLeaks     measurements of the test class
+     * @param retainedHeap   retained heap after the last example
+     * @param growthExamples number of consecutive examples with growth reported as a leak
+     *
+     * @return report or null if nothing was detected
+     */
+    @Nullable
+    static String getReport(@NotNull String name, @NotNull ClassLeaks classLeaks, long retainedHeap, int growthExamples) {
+        StringBuilder sb = new StringBuilder();
+
+        // NOTE: growth after an example is retained heap at the start of the next one
+        ArrayList<Long> heap = new ArrayList<>(classLeaks.retainedHeap);
+        heap.add(retainedHeap);
+
+        int iMax = classLeaks.exampleKeys.size();
+        int runStart = 0;
+        for (int i = 0; i <= iMax; i++) {
+            if (i < iMax && heap.get(i + 1) > heap.get(i)) continue;
+
+            if (i - runStart >= growthExamples) {
+                int worst = runStart;
+                for (int j = runStart; j < i; j++) {
+                    if (heap.get(j + 1) - heap.get(j) > heap.get(worst + 1) - heap.get(worst)) worst = j;
+                }
+
+                sb.append(String.format("  retained heap grew %d KB over %d examples from %s to %s, largest growth %d KB after %s\n",
+                        (heap.get(i) - heap.get(runStart)) / 1024, i - runStart,
+                        classLeaks.exampleKeys.get(runStart), classLeaks.exampleKeys.get(i - 1),
+                        (heap.get(worst + 1) - heap.get(worst)) / 1024, classLeaks.exampleKeys.get(worst)));
+            }
+            runStart = i + 1;
+        }
+
+        for (Map.Entry<String, List<String>> entry : classLeaks.survivors.entrySet()) {
+            sb.append("  not collected after ").append(entry.getKey()).append(": ").append(String.join(", ", entry.getValue())).append("\n");
+        }
+
+        if (sb.length() == 0) return null;
+        return String.format("%s: possible leaks in %d example(s)\n", name, iMax) + sb;
+    }
+
+    static long getRetainedHeap() {
+        forceGc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static void forceGc() {
+        // NOTE: System.gc() is only a request, repeat until a weakly reachable object is collected
+        WeakReference<Object> sentinel = new WeakReference<>(new Object());
+        for (int i = 0; i < 10 && sentinel.get() != null; i++) {
+            System.gc();
+        }
+        System.gc();
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time of spec renderer lifecycle phases per example
+ * <p>
+ * Phase times are inclusive, parse sub-phases are part of parse and closeOpenFile is part of finalizeRender. Times of
+ * all examples of a test class are written to build/plugin-test-util/phases as csv and json, in microseconds, and the
+ * slowest examples are printed after the last example of the class. Counters, such as {@link IndexFlushTracker}
+ * flushes, are reported per example and totalled per class.
+ * <p>
+ * Enable with -Dplugin.test.util.phase-timings=true, number of slowest examples listed is set with
+ * -Dplugin.test.util.phase-timings-top, default 10
+ */
+public final class SpecPhaseTimings {
+    private static final Logger LOG = Logger.getInstance(SpecPhaseTimings.class);
+
+    final public static String OPTIONS = "options";
+    final public static String PARSE = "parse";
+    final public static String PARSE_LOG = "parse.log";
+    final public static String PARSE_CODE_STYLE = "parse.codeStyle";
+    final public static String PARSE_INITIALIZE = "parse.initializeRenderer";
+    final public static String PARSE_ADDITIONAL_FILES = "parse.additionalFiles";
+    final public static String PARSE_CONFIGURE = "parse.configure";
+    final public static String RENDER_HTML = "renderHtml";
+    final public static String RENDER_AST = "renderAst";
+    final public static String HIGHLIGHTING = "highlighting";
+    final public static String FINALIZE_RENDER = "finalizeRender";
+    final public static String CLOSE_OPEN_FILE = "closeOpenFile";
+    final public static String TOTAL = "total";
+
+    static class ExampleTimes {
+        final @NotNull String key;
+        final @NotNull LinkedHashMap<String, Long> nanos = new LinkedHashMap<>();
+        final @NotNull LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+
+        ExampleTimes(@NotNull String key) {
+            this.key = key;
+        }
+
+        long get(@NotNull String phase) {
+            Long value = nanos.get(phase);
+            return value == null ? 0 : value;
+        }
+
+        int getCount(@NotNull String counter) {
+            Integer value = counts.get(counter);
+            return value == null ? 0 : value;
+        }
+    }
+
+    // NOTE: examples run one at a time on the EDT
+    private static final LinkedHashMap<Class<?>, List<ExampleTimes>> ourClassTimes = new LinkedHashMap<>();
+    private static volatile @Nullable ExampleTimes ourCurrent;
+    private static volatile @Nullable Class<?> ourCurrentClass;
+
+    private SpecPhaseTimings() {
+    }
+
+    public static boolean isEnabled() {
+        return SpecTestProperties.getBoolean(SpecTestProperties.PHASE_TIMINGS, false);
+    }
+
+    /**
+     * Start timing phases of an example
+     *
+     * @param testClass test class
+     * @param example   spec example
+     */
+    public static void startExample(@NotNull Class<?> testClass, @NotNull SpecExample example) {
+        if (!isEnabled()) return;
+
+        ourCurrentClass = testClass;
+        ourCurrent = new ExampleTimes(SpecExampleTimings.getKey(example));
+    }
+
+    /**
+     * Finish timing phases of the current example
+     *
+     * @param totalNanos total example time in nanoseconds
+     */
+    public static void finishExample(long totalNanos) {
+        ExampleTimes current = ourCurrent;
+        Class<?> testClass = ourCurrentClass;
+        if (current == null || testClass == null) return;
+
+        ourCurrent = null;
+        current.nanos.put(TOTAL, totalNanos);
+        synchronized (ourClassTimes) {
+            ourClassTimes.computeIfAbsent(testClass, key -> new ArrayList<>()).add(current);
+        }
+    }
+
+    /**
+     * Start a phase
+     *
+     * @return start time to pass to {@link #stop(String, long)}, 0 if no example is being timed
+     */
+    public static long start() {
+        return ourCurrent == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Stop a phase, time is added to the phase time of the current example
+     *
+     * @param phase phase name
+     * @param start value returned by {@link #start()}
+     */
+    public static void stop(@NotNull String phase, long start) {
+        ExampleTimes current = ourCurrent;
+        if (current != null && start != 0) {
+            current.nanos.merge(phase, System.nanoTime() - start, Long::sum);
+        }
+    }
+
+    /**
+     * Increment a counter of the current example
+     *
+     * @param counter counter name
+     */
+    public static void count(@NotNull String counter) {
+        ExampleTimes current = ourCurrent;
+        if (current != null) {
+            current.counts.merge(counter, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Write reports and print summary for all timed test classes, called after the last example of a test class
+     */
+    public static void report() {
+        LinkedHashMap<Class<?>, List<ExampleTimes>> classTimes;
+        synchronized (ourClassTimes) {
+            if (ourClassTimes.isEmpty()) return;
+            classTimes = new LinkedHashMap<>(ourClassTimes);
+            ourClassTimes.clear();
+        }
+
+        int top = SpecTestProperties.getInt(SpecTestProperties.PHASE_TIMINGS_TOP, 10);
+        for (Map.Entry<Class<?>, List<ExampleTimes>> entry : classTimes.entrySet()) {
+            String name = entry.getKey().getSimpleName();
+            List<ExampleTimes> examples = entry.getValue();
+
+            File dir = SpecTestProperties.getBuildDir("phases");
+            writeText(new File(dir, SpecTestProperties.toFileName(name) + ".csv"), toCsv(examples));
+            writeText(new File(dir, SpecTestProperties.toFileName(name) + ".json"), toJson(name, examples));
+
+            System.out.println(getSummary(name, examples, top));
+        }
+    }
+
+    @NotNull
+    static List<String> getPhases(@NotNull List<ExampleTimes> examples) {
+        LinkedHashSet<String> phases = new LinkedHashSet<>();
+        for (ExampleTimes example : examples) {
+            phases.addAll(example.nanos.keySet());
+        }
+        // total is always last
+        phases.remove(TOTAL);
+        phases.add(TOTAL);
+        return new ArrayList<>(phases);
+    }
+
+    @NotNull
+    static List<String> getCounters(@NotNull List<ExampleTimes> examples) {
+        LinkedHashSet<String> counters = new LinkedHashSet<>();
+        for (ExampleTimes example : examples) {
+            counters.addAll(example.counts.keySet());
+        }
+        return new ArrayList<>(counters);
+    }
+
+    @NotNull
+    static String toCsv(@NotNull List<ExampleTimes> examples) {
+        List<String> phases = getPhases(examples);
+        List<String> counters = getCounters(examples);
+        StringBuilder sb = new StringBuilder("example");
+        for (String phase : phases) sb.append(',').append(phase);
+        for (String counter : counters) sb.append(',').append(counter);
+        sb.append('\n');
+
+        for (ExampleTimes example : examples) {
+            sb.append('"').append(example.key.replace("\"", "\"\"")).append('"');
+            for (String phase : phases) sb.append(',').append(example.get(phase) / 1000);
+            for (String counter : counters) sb.append(',').append(example.getCount(counter));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    @NotNull
+    static String toJson(@NotNull String name, @NotNull List<ExampleTimes> examples) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"testClass\": ").append(jsonString(name)).append(",\n  \"examples\": [");
+        String sep = "\n";
+        for (ExampleTimes example : examples) {
+            sb.append(sep).append("    { \"example\": ").append(jsonString(example.key)).append(", \"phases\": {");
+            String phaseSep = " ";
+            for (Map.Entry<String, Long> entry : example.nanos.entrySet()) {
+                sb.append(phaseSep).append(jsonString(entry.getKey())).append(": ").append(entry.getValue() / 1000);
+                phaseSep = ", ";
+            }
+            sb.append(" }");
+            if (!example.counts.isEmpty()) {
+                sb.append(", \"counts\": {");
+                String countSep = " ";
+                for (Map.Entry<String, Integer> entry : example.counts.entrySet()) {
+                    sb.append(countSep).append(jsonString(entry.getKey())).append(": ").append(entry.getValue());
+                    countSep = ", ";
+                }
+                sb.append(" }");
+            }
+            sb.append(" }");
+            sep = ",\n";
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    @NotNull
+    static String jsonString(@NotNull String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < ' ') sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    @NotNull
+    static String getSummary(@NotNull String name, @NotNull List<ExampleTimes> examples, int top) {
+        List<String> phases = getPhases(examples);
+        phases.remove(TOTAL);
+
+        ArrayList<ExampleTimes> sorted = new ArrayList<>(examples);
+        sorted.sort((o1, o2) -> Long.compare(o2.get(TOTAL), o1.get(TOTAL)));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s: %d example(s), slowest %d, times in ms\n", name, examples.size(), Math.min(top, sorted.size())));
+
+        for (int i = 0; i < top && i < sorted.size(); i++) {
+            ExampleTimes example = sorted.get(i);
+            sb.append(String.format("  %10.3f  %s", example.get(TOTAL) / 1e6, example.key));
+
+            String sep = " (";
+            for (String phase : phases) {
+                if (example.nanos.containsKey(phase) && phase.indexOf('.') == -1) {
+                    sb.append(sep).append(phase).append(String.format(" %.3f", example.get(phase) / 1e6));
+                    sep = ", ";
+                }
+            }
+            if (!sep.equals(" (")) sb.append(")");
+            sb.append("\n");
+        }
+
+        List<String> counters = getCounters(examples);
+        if (!counters.isEmpty()) {
+            sb.append("  counts:");
+            String sep = " ";
+            for (String counter : counters) {
+                int total = 0;
+                for (ExampleTimes example : examples) total += example.getCount(counter);
+                sb.append(sep).append(counter).append(' ').append(total);
+                sep = ", ";
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    static void writeText(@NotNull File file, @NotNull String text) {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        } catch (IOException e) {
+            LOG.warn("Cannot write phase timings file " + file, e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+
+/**
+ * JVM wide settings for spec tests, given as system properties so they can be set per gradle test task or CI job
+ * <p>
+ * Per test class settings are given as data keys in the default options of the test case.
+ */
+public final class SpecTestProperties {
+    final public static String PREFIX = "plugin.test.util.";
+
+    /**
+     * Build directory used for caches and reports, relative paths are resolved against the working directory, default "build"
+     */
+    final public static String BUILD_DIR = PREFIX + "build-dir";
+
+    /**
+     * Enable on-disk cache of parsed spec examples, default true
+     */
+    final public static String SPEC_CACHE = PREFIX + "spec-cache";
+
+    /**
+     * Parameterized test data holds handles which load example text from the spec cache when used, default false
+     */
+    final public static String LAZY_EXAMPLES = PREFIX + "lazy-examples";
+
+    /**
+     * Reuse results of examples run by parameterized tests for the full spec, default true
+     */
+    final public static String REUSE_RESULTS = PREFIX + "reuse-results";
+
+    /**
+     * Resolve example options once per distinct options set of a test class, default true
+     */
+    final public static String OPTIONS_CACHE = PREFIX + "options-cache";
+
+    /**
+     * Stream full spec actual output to a file in the build directory and compare it example by example, default false
+     */
+    final public static String FULL_SPEC_STREAMING = PREFIX + "full-spec-streaming";
+
+    /**
+     * Maximum number of differing example windows reported for a streamed full spec, default 10
+     */
+    final public static String FULL_SPEC_MAX_WINDOWS = PREFIX + "full-spec-max-windows";
+
+    /**
+     * Combined expected and actual text length above which failures are reported as compact diff hunks, default 100000
+     */
+    final public static String DIFF_THRESHOLD = PREFIX + "diff-threshold";
+
+    /**
+     * Maximum number of diff hunks in a compact failure report, default 20
+     */
+    final public static String DIFF_MAX_HUNKS = PREFIX + "diff-max-hunks";
+
+    /**
+     * Persistent cache of passed examples, examples with unchanged inputs are not run again, default false
+     */
+    final public static String RESULT_CACHE = PREFIX + "result-cache";
+
+    /**
+     * Record run time of each example in the build directory, used for cost-weighted sharding, default false
+     */
+    final public static String RECORD_TIMINGS = PREFIX + "record-timings";
+
+    /**
+     * Number of shards spec examples are split into, default 1
+     */
+    final public static String SHARD_COUNT = PREFIX + "shard-count";
+
+    /**
+     * Index of the shard run by this JVM, 0 based, default 0. Index equal to shard count runs only the full spec example
+     */
+    final public static String SHARD_INDEX = PREFIX + "shard-index";
+
+    /**
+     * Assign examples to shards by recorded run time instead of hash, default false
+     */
+    final public static String SHARD_BY_TIMINGS = PREFIX + "shard-by-timings";
+
+    /**
+     * Maximum size in KB of resource content shared by additional project files, default 65536
+     */
+    final public static String RESOURCE_CACHE_KB = PREFIX + "resource-cache-kb";
+
+    /**
+     * Record time of renderer lifecycle phases per example and write a report per test class, default false
+     */
+    final public static String PHASE_TIMINGS = PREFIX + "phase-timings";
+
+    /**
+     * Number of slowest examples listed in the phase timings summary of a test class, default 10
+     */
+    final public static String PHASE_TIMINGS_TOP = PREFIX + "phase-timings-top";
+
+    /**
+     * Measure retained heap after forced GC around each example and check example objects are collected, default false
+     */
+    final public static String LEAK_DETECTION = PREFIX + "leak-detection";
+
+    /**
+     * Number of consecutive examples with retained heap growth reported as a leak, default 10
+     */
+    final public static String LEAK_GROWTH_EXAMPLES = PREFIX + "leak-growth-examples";
+
+    /**
+     * Maximum number of highlighting results kept for test classes with highlighting cache, default 1024
+     */
+    final public static String HIGHLIGHTING_CACHE_SIZE = PREFIX + "highlighting-cache-size";
+
+    /**
+     * Fail examples which modify shared code style settings with CODE_STYLE_COPY_ON_WRITE, settings are serialized
+     * before and after each example, default false
+     */
+    final public static String CODE_STYLE_CHECK = PREFIX + "code-style-check";
+
+    private SpecTestProperties() {
+    }
+
+    @NotNull
+    public static String getString(@NotNull String name, @NotNull String defaultValue) {
+        String value = System.getProperty(name);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    public static boolean getBoolean(@NotNull String name, boolean defaultValue) {
+        String value = System.getProperty(name);
+        return value == null || value.trim().isEmpty() ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    public static int getInt(@NotNull String name, int defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.trim().isEmpty()) return defaultValue;
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("System property '" + name + "' requires an integer value, got: '" + value + "'", e);
+        }
+    }
+
+    @NotNull
+    public static File getBuildDir() {
+        return new File(getString(BUILD_DIR, "build")).getAbsoluteFile();
+    }
+
+    /**
+     * Get directory under build/plugin-test-util, creating it if it does not exist
+     *
+     * @param subDir sub-directory name
+     *
+     * @return directory
+     */
+    @NotNull
+    public static File getBuildDir(@NotNull String subDir) {
+        File dir = new File(new File(getBuildDir(), "plugin-test-util"), subDir);
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * Convert a resource path or class name to a name usable as a file name
+     *
+     * @param name name
+     *
+     * @return file name
+     */
+    @NotNull
+    public static String toFileName(@NotNull String name) {
+        String fileName = name.startsWith("/") ? name.substring(1) : name;
+        return fileName.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
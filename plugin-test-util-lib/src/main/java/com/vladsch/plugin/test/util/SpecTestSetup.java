@@ -22,9 +22,12 @@ import com.vladsch.flexmark.util.data.DataHolder;
 import com.vladsch.flexmark.util.data.DataKey;
 import com.vladsch.flexmark.util.data.DataKeyAggregator;
 import com.vladsch.flexmark.util.data.DataSet;
+import com.vladsch.flexmark.util.data.MutableDataSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -47,6 +50,21 @@ public class SpecTestSetup {
 
     // @formatter:on
 
+    /**
+     * Get settings operations the options will apply for the key
+     *
+     * @param key     settings consumer key
+     * @param options options
+     * @param <T>     type of settings
+     *
+     * @return operations in order of application, empty if options do not have the key
+     */
+    @NotNull
+    public static <T> List<Consumer<T>> getSettingsOperations(@NotNull DataKey<Consumer<T>> key, @Nullable DataHolder options) {
+        if (options == null || !options.contains(key)) return Collections.emptyList();
+        return SettingsConsumerChain.getOperations(key.get(options));
+    }
+
     private final static SettingsKeyAggregator INSTANCE = new SettingsKeyAggregator();
     static {
         DataSet.registerDataKeyAggregator(INSTANCE);
@@ -59,15 +77,29 @@ public class SpecTestSetup {
             return combined;
         }
 
+        /**
+         * Settings consumers are composed into flat {@link SettingsConsumerChain} lists instead of nested
+         * andThen() lambdas, all keys are set in one mutable copy of combined
+         */
         @NotNull
         @Override
         public DataHolder aggregateActions(@NotNull DataHolder combined, @NotNull DataHolder other, @NotNull DataHolder overrides) {
-            combined = CODE_STYLE_SETTINGS_OPTION.aggregateActions(combined, other, overrides);
-            combined = ADDITIONAL_PROJECT_FILES_OPTION.aggregateActions(combined, other, overrides);
-            combined = LINE_MARKER_SETTINGS_OPTION.aggregateActions(combined, other, overrides);
-            combined = DEBUG_LOG_SETTINGS_OPTION.aggregateActions(combined, other, overrides);
-            combined = CUSTOMIZE_FILE_OPTION.aggregateActions(combined, other, overrides);
-            return combined;
+            MutableDataSet aggregated = null;
+            aggregated = aggregateChain(CODE_STYLE_SETTINGS, aggregated, combined, other, overrides);
+            aggregated = aggregateChain(ADDITIONAL_PROJECT_FILES, aggregated, combined, other, overrides);
+            aggregated = aggregateChain(LINE_MARKER_SETTINGS, aggregated, combined, other, overrides);
+            aggregated = aggregateChain(DEBUG_LOG_SETTINGS, aggregated, combined, other, overrides);
+            aggregated = aggregateChain(CUSTOMIZE_FILE, aggregated, combined, other, overrides);
+            return aggregated == null ? combined : aggregated.toImmutable();
+        }
+
+        @Nullable
+        static <T> MutableDataSet aggregateChain(@NotNull DataKey<Consumer<T>> key, @Nullable MutableDataSet aggregated, @NotNull DataHolder combined, @NotNull DataHolder other, @NotNull DataHolder overrides) {
+            if (other.contains(key) && overrides.contains(key)) {
+                if (aggregated == null) aggregated = combined.toMutable();
+                aggregated.set(key, SettingsConsumerChain.compose(key.get(other), key.get(overrides)));
+            }
+            return aggregated;
         }
 
         @NotNull
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Line diff of two texts using Myers O(ND) algorithm after trimming common prefix and suffix lines
+ * <p>
+ * When the number of differing lines exceeds the maximum edit distance the whole differing range is returned
+ * as a single hunk, so the cost stays bounded for completely different texts.
+ */
+public final class TextDiff {
+    final public static int MAX_EDIT_DISTANCE = 2000;
+
+    public static class Hunk {
+        final public int expectedStart;
+        final public int expectedEnd;
+        final public int actualStart;
+        final public int actualEnd;
+
+        public Hunk(int expectedStart, int expectedEnd, int actualStart, int actualEnd) {
+            this.expectedStart = expectedStart;
+            this.expectedEnd = expectedEnd;
+            this.actualStart = actualStart;
+            this.actualEnd = actualEnd;
+        }
+
+        @Override
+        public String toString() {
+            return "@@ -" + (expectedStart + 1) + "," + (expectedEnd - expectedStart) + " +" + (actualStart + 1) + "," + (actualEnd - actualStart) + " @@";
+        }
+    }
+
+    private TextDiff() {
+    }
+
+    /**
+     * Split text into lines, each line includes its EOL
+     *
+     * @param text text
+     *
+     * @return lines
+     */
+    @NotNull
+    public static List<String> lines(@NotNull String text) {
+        ArrayList<String> lines = new ArrayList<>();
+        int start = 0;
+        int iMax = text.length();
+        while (start < iMax) {
+            int pos = text.indexOf('\n', start);
+            int end = pos == -1 ? iMax : pos + 1;
+            lines.add(text.substring(start, end));
+            start = end;
+        }
+        return lines;
+    }
+
+    /**
+     * Compute differing line ranges
+     *
+     * @param expected expected lines
+     * @param actual   actual lines
+     *
+     * @return hunks in line order, empty if lines are equal
+     */
+    @NotNull
+    public static List<Hunk> diff(@NotNull List<String> expected, @NotNull List<String> actual) {
+        int n = expected.size();
+        int m = actual.size();
+
+        int prefix = 0;
+        while (prefix < n && prefix < m && expected.get(prefix).equals(actual.get(prefix))) prefix++;
+
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < m - prefix && expected.get(n - 1 - suffix).equals(actual.get(m - 1 - suffix))) suffix++;
+
+        ArrayList<Hunk> hunks = new ArrayList<>();
+        if (prefix == n && prefix == m) return hunks;
+
+        // NOTE: compare lines by id, equal lines get the same id
+        HashMap<String, Integer> ids = new HashMap<>();
+        int[] a = new int[n - prefix - suffix];
+        int[] b = new int[m - prefix - suffix];
+        for (int i = 0; i < a.length; i++) a[i] = ids.computeIfAbsent(expected.get(prefix + i), k -> ids.size());
+        for (int i = 0; i < b.length; i++) b[i] = ids.computeIfAbsent(actual.get(prefix + i), k -> ids.size());
+
+        List<int[]> matches = myers(a, b);
+        if (matches == null) {
+            hunks.add(new Hunk(prefix, n - suffix, prefix, m - suffix));
+            return hunks;
+        }
+
+        // hunks are the gaps between matched lines
+        int x = 0;
+        int y = 0;
+        for (int[] match : matches) {
+            if (match[0] > x || match[1] > y) {
+                hunks.add(new Hunk(prefix + x, prefix + match[0], prefix + y, prefix + match[1]));
+            }
+            x = match[0] + 1;
+            y = match[1] + 1;
+        }
+
+        if (x < a.length || y < b.length) {
+            hunks.add(new Hunk(prefix + x, prefix + a.length, prefix + y, prefix + b.length));
+        }
+        return hunks;
+    }
+
+    /**
+     * Myers diff
+     *
+     * @param a expected line ids
+     * @param b actual line ids
+     *
+     * @return matched line index pairs in order or null if edit distance exceeds {@link #MAX_EDIT_DISTANCE}
+     */
+    static List<int[]> myers(int[] a, int[] b) {
+        int n = a.length;
+        int m = b.length;
+        int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = n + m + 1;
+        int[] v = new int[2 * offset + 1];
+
+        // trace.get(d) holds v[-(d-1)..(d-1)] before step d, which is all backtracking needs
+        ArrayList<int[]> trace = new ArrayList<>();
+        int found = -1;
+
+        for (int d = 0; d <= max && found < 0; d++) {
+            int[] snapshot = new int[Math.max(0, 2 * d - 1)];
+            if (d > 0) System.arraycopy(v, offset - d + 1, snapshot, 0, snapshot.length);
+            trace.add(snapshot);
+
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]) ? v[offset + k + 1] : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[x] == b[y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+
+                if (x >= n && y >= m) {
+                    found = d;
+                    break;
+                }
+            }
+        }
+
+        if (found < 0) return null;
+
+        ArrayList<int[]> matches = new ArrayList<>();
+        int x = n;
+        int y = m;
+        for (int d = found; d > 0; d--) {
+            int[] prev = trace.get(d);
+            int k = x - y;
+            int prevK = k == -d || (k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1]) ? k + 1 : k - 1;
+            int prevX = prev[prevK + d - 1];
+            int prevY = prevX - prevK;
+            int snakeX = prevK == k + 1 ? prevX : prevX + 1;
+            int snakeY = snakeX - k;
+
+            while (x > snakeX && y > snakeY) {
+                x--;
+                y--;
+                matches.add(new int[] { x, y });
+            }
+            x = prevX;
+            y = prevY;
+        }
+
+        // leading snake of d == 0
+        while (x > 0 && y > 0) {
+            x--;
+            y--;
+            matches.add(new int[] { x, y });
+        }
+
+        Collections.reverse(matches);
+        return matches;
+    }
+}
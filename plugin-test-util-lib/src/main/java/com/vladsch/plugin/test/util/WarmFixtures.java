@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerImpl;
+import com.intellij.codeInsight.daemon.impl.LineMarkerSettingsImpl;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+import com.intellij.testFramework.EdtTestUtil;
+import com.intellij.testFramework.fixtures.CodeInsightTestFixture;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Holder of the fixture kept alive across examples of a light test class in warm fixture mode
+ * <p>
+ * The first example of the class sets up the fixture as usual and becomes its owner. Following examples use the same
+ * fixture, project and module without setUp and tearDown. After each example state which examples are known to change
+ * is reset and the rest is verified, if anything is left over the owner tears down the fixture and the next example
+ * sets up a new one. The fixture is torn down after the last example of the class.
+ */
+public final class WarmFixtures {
+    private static final Logger LOG = Logger.getInstance(WarmFixtures.class);
+
+    /**
+     * Test case which set up a warm fixture
+     */
+    public interface Owner {
+        /**
+         * Tear down the fixture and test case, same as tearDown() when not in warm fixture mode
+         *
+         * @throws Exception if tear down fails
+         */
+        void tearDownWarmFixture() throws Exception;
+    }
+
+    private static class WarmFixture {
+        final @NotNull Class<?> testClass;
+        final @NotNull Owner owner;
+        final @NotNull CodeInsightTestFixture fixture;
+
+        WarmFixture(@NotNull Class<?> testClass, @NotNull Owner owner, @NotNull CodeInsightTestFixture fixture) {
+            this.testClass = testClass;
+            this.owner = owner;
+            this.fixture = fixture;
+        }
+    }
+
+    private static @Nullable WarmFixture ourWarmFixture;
+    private static @Nullable HashMap<String, Boolean> ourLineMarkerProviders;
+
+    private WarmFixtures() {
+    }
+
+    /**
+     * Get warm fixture for the test class
+     *
+     * @param testClass test class
+     *
+     * @return fixture or null if the test case needs to set up a new one and call {@link #saveState()}
+     *
+     * @throws Exception if tear down of a fixture of another test class fails
+     */
+    @Nullable
+    public static CodeInsightTestFixture acquire(@NotNull Class<?> testClass) throws Exception {
+        WarmFixture warmFixture = ourWarmFixture;
+        if (warmFixture != null) {
+            if (warmFixture.testClass == testClass) return warmFixture.fixture;
+
+            // NOTE: only if the previous test class did not run its after class methods
+            ourWarmFixture = null;
+            warmFixture.owner.tearDownWarmFixture();
+        }
+
+        return null;
+    }
+
+    /**
+     * Save state reset after each example, called after a new fixture is set up
+     */
+    public static void saveState() {
+        ourLineMarkerProviders = new HashMap<>(getLineMarkerSettings().providers);
+    }
+
+    /**
+     * Reset state after an example and keep the fixture if nothing is left over
+     *
+     * @param testClass test class
+     * @param testCase  test case which ran the example
+     * @param fixture   fixture
+     *
+     * @return true if fixture is kept or was torn down by its owner, false if test case must tear down the fixture
+     *
+     * @throws Exception if tear down of the fixture by its owner fails
+     */
+    public static boolean release(@NotNull Class<?> testClass, @NotNull Owner testCase, @NotNull CodeInsightTestFixture fixture) throws Exception {
+        WarmFixture warmFixture = ourWarmFixture;
+        List<String> leftovers = reset(fixture);
+
+        if (leftovers.isEmpty()) {
+            if (warmFixture == null) ourWarmFixture = new WarmFixture(testClass, testCase, fixture);
+            return true;
+        }
+
+        LOG.info("Warm fixture of " + testClass.getSimpleName() + " not reused, left over: " + String.join(", ", leftovers));
+        ourWarmFixture = null;
+
+        if (warmFixture != null && warmFixture.owner != testCase) {
+            warmFixture.owner.tearDownWarmFixture();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tear down warm fixture, called after the last example of a test class
+     *
+     * @throws Throwable if tear down fails
+     */
+    public static void tearDown() throws Throwable {
+        WarmFixture warmFixture = ourWarmFixture;
+        if (warmFixture != null) {
+            ourWarmFixture = null;
+            EdtTestUtil.runInEdtAndWait(warmFixture.owner::tearDownWarmFixture);
+        }
+    }
+
+    /**
+     * Reset state changed by examples and verify nothing else is left over
+     *
+     * @param fixture fixture
+     *
+     * @return descriptions of left over state, empty if fixture can be reused
+     */
+    @NotNull
+    public static List<String> reset(@NotNull CodeInsightTestFixture fixture) {
+        Project project = fixture.getProject();
+
+        // NOTE: line marker examples change line marker settings without restoring them
+        if (ourLineMarkerProviders != null) {
+            LineMarkerSettingsImpl lineMarkerSettings = getLineMarkerSettings();
+            lineMarkerSettings.providers.clear();
+            lineMarkerSettings.providers.putAll(ourLineMarkerProviders);
+        }
+
+        ArrayList<String> leftovers = new ArrayList<>();
+        if (CodeStyleSettingsManager.getInstance(project).getTemporarySettings() != null) {
+            leftovers.add("temporary code style settings");
+        }
+
+        // verify
+        for (VirtualFile file : FileEditorManager.getInstance(project).getOpenFiles()) {
+            leftovers.add("open file " + file.getPath());
+        }
+
+        Editor[] editors = EditorFactory.getInstance().getAllEditors();
+        if (editors.length > 0) {
+            leftovers.add(editors.length + " unreleased editor(s)");
+        }
+
+        VirtualFile root = fixture.getTempDirFixture().getFile("");
+        if (root != null && root.isValid()) {
+            VfsUtilCore.iterateChildrenRecursively(root, null, file -> {
+                if (!file.isDirectory() && !ReusedAdditionalFiles.isReusedFile(project, file)) {
+                    leftovers.add("temp file " + file.getPath());
+                }
+                return true;
+            });
+        }
+
+        if (PsiDocumentManager.getInstance(project).hasUncommitedDocuments()) {
+            leftovers.add("uncommitted documents");
+        }
+
+        if (((DaemonCodeAnalyzerImpl) DaemonCodeAnalyzer.getInstance(project)).isRunning()) {
+            leftovers.add("running daemon");
+        }
+
+        return leftovers;
+    }
+
+    @NotNull
+    static LineMarkerSettingsImpl getLineMarkerSettings() {
+        return (LineMarkerSettingsImpl) com.intellij.codeInsight.daemon.LineMarkerSettings.getSettings();
+    }
+}
@@ -63,7 +63,6 @@ import com.intellij.testFramework.UsefulTestCase;
 import com.intellij.testFramework.fixtures.CodeInsightTestFixture;
 import com.intellij.testFramework.fixtures.IdeaTestExecutionPolicy;
 import com.intellij.testFramework.fixtures.TempDirTestFixture;
-import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
 import com.intellij.util.ObjectUtils;
 import com.intellij.util.ThrowableRunnable;
 import com.vladsch.flexmark.test.util.DumpSpecReader;
@@ -76,11 +75,25 @@ import com.vladsch.flexmark.test.util.spec.SpecReader;
 import com.vladsch.flexmark.util.data.DataHolder;
 import com.vladsch.flexmark.util.data.DataKey;
 import com.vladsch.flexmark.util.data.DataSet;
+import com.vladsch.plugin.test.util.FullSpecReader;
+import com.vladsch.plugin.test.util.HighlightingResultCache;
+import com.vladsch.plugin.test.util.HighlightingSnapshot;
+import com.vladsch.plugin.test.util.IndexFlushTracker;
 import com.vladsch.plugin.test.util.IntentionInfo;
+import com.vladsch.plugin.test.util.OptionsRegistry;
+import com.vladsch.plugin.test.util.SpecDiffReport;
+import com.vladsch.plugin.test.util.SpecExampleCache;
+import com.vladsch.plugin.test.util.SpecExampleOptions;
+import com.vladsch.plugin.test.util.SpecExampleResult;
+import com.vladsch.plugin.test.util.SpecExampleResultCache;
+import com.vladsch.plugin.test.util.SpecExampleResults;
+import com.vladsch.plugin.test.util.SpecExampleShards;
+import com.vladsch.plugin.test.util.SpecExampleTimings;
+import com.vladsch.plugin.test.util.SpecLeakDetector;
+import com.vladsch.plugin.test.util.SpecPhaseTimings;
 import com.vladsch.plugin.test.util.TestBundle;
 import com.vladsch.plugin.test.util.renderers.LightFixtureSpecRenderer;
 import com.vladsch.plugin.util.TestUtils;
-import junit.framework.TestCase;
 import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -95,14 +108,16 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static java.util.Comparator.comparingInt;
 
@@ -116,19 +131,21 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
     String BANNER_SEGMENTS = bannerText("SEGMENTS");
     String BANNER_AFTER_ACTION = bannerText("After Action");
     String BANNER_BEFORE_ACTION = bannerText("Before Action");
+    String BANNER_TIMING = bannerText("Timing");
 //    ExceptionMatcher EXCEPTION_MATCHER = ExceptionMatcher.matchPrefix(RuntimeException.class, "junit.framework.ComparisonFailure: ");
     ExceptionMatcher EXCEPTION_MATCHER = ExceptionMatcher.matchPrefix(junit.framework.ComparisonFailure.class, "");
 
-    Map<String, DataHolder> optionsMap = new HashMap<>();
     DataKey<Boolean> TEST_CARET_MARKUP = new DataKey<>("TEST_CARET_MARKUP", false);
 
+    OptionsRegistry OPTIONS = SpecTest.OPTIONS;
+
+    /**
+     * Immutable options map of {@link #OPTIONS}
+     */
+    Map<String, DataHolder> optionsMap = OPTIONS.getOptions();
+
     static Map<String, DataHolder> getOptionsMap() {
-        synchronized (optionsMap) {
-            if (optionsMap.isEmpty()) {
-                optionsMap.putAll(SpecTest.optionsMap);
-            }
-            return optionsMap;
-        }
+        return OPTIONS.getOptions();
     }
 
     @NotNull
@@ -144,9 +161,25 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
         com.vladsch.flexmark.test.util.TestUtils.appendBannerIfNeeded(out, banner);
     }
 
+    /**
+     * Get parameterized test data for the spec, parsed examples are cached under the build directory
+     * <p>
+     * When sharding is enabled only examples of the current shard are returned, see {@link SpecExampleShards}
+     *
+     * @param location spec resource location
+     *
+     * @return test data
+     */
     @NotNull
     static List<Object[]> getTests(@NotNull ResourceLocation location) {
-        return com.vladsch.flexmark.test.util.TestUtils.getTestData(location);
+        List<Object[]> data = SpecExampleCache.getTestData(location);
+
+        if (SpecExampleShards.isEnabled()) {
+            data = SpecExampleShards.select(location, data);
+        }
+
+        // NOTE: full spec runs last so it can use results of the examples instead of running them again
+        return SpecExampleResults.isEnabled() ? SpecExampleResults.fullSpecLast(data) : data;
     }
 
     @Nullable
@@ -351,6 +384,14 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
      * @return resulting data holder to use for spec renderer instantiation
      */
     default DataHolder appendDefaultExampleOptions(@NotNull SpecExample example, @Nullable DataHolder options, @NotNull String optionsText) {
+        SpecExampleOptions optionsCache = SpecExampleOptions.getInstance(getClass());
+        if (optionsCache != null && optionsCache.isCached(options)) {
+            return optionsCache.getAppendedOptions(options, optionsText, text -> doAppendDefaultExampleOptions(example, options, text));
+        }
+        return doAppendDefaultExampleOptions(example, options, optionsText);
+    }
+
+    default DataHolder doAppendDefaultExampleOptions(@NotNull SpecExample example, @Nullable DataHolder options, @NotNull String optionsText) {
         DataHolder modOptions = com.vladsch.flexmark.test.util.TestUtils.getOptions(example, optionsText, this::options);
         if (modOptions != null) {
             if (options != null) {
@@ -362,6 +403,34 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
         return modOptions;
     }
 
+    /**
+     * Get options for the example options set, resolved once per options set for the test class
+     *
+     * @param example spec example
+     *
+     * @return example options or null if none
+     */
+    @Nullable
+    default DataHolder getExampleOptions(@NotNull SpecExample example) {
+        SpecExampleOptions optionsCache = SpecExampleOptions.getInstance(getClass());
+        return optionsCache != null ? optionsCache.getOptions(example, this::options) : com.vladsch.flexmark.test.util.TestUtils.getOptions(example, example.getOptionsSet(), this::options);
+    }
+
+    /**
+     * Get example options combined with default options
+     *
+     * @param example        spec example
+     * @param exampleOptions example options
+     *
+     * @return options for spec renderer
+     */
+    @NotNull
+    default DataHolder getResolvedOptions(@NotNull SpecExample example, @Nullable DataHolder exampleOptions) {
+        SpecExampleOptions optionsCache = SpecExampleOptions.getInstance(getClass());
+        if (optionsCache != null) return optionsCache.getResolvedOptions(example, exampleOptions, getDefaultOptions());
+        return exampleOptions == null ? getDefaultOptions() : DataSet.aggregate(getDefaultOptions(), exampleOptions);
+    }
+
     /**
      * Load extra settings and initialize spec renderer for parse
      *
@@ -400,8 +469,7 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
     @NotNull
     @Override
     default LightFixtureSpecRenderer<?> getSpecExampleRenderer(@NotNull SpecExample example, @Nullable DataHolder exampleOptions) {
-        DataHolder options = exampleOptions == null ? getDefaultOptions() : DataSet.aggregate(getDefaultOptions(), exampleOptions);
-        return createExampleSpecRenderer(example, options);
+        return createExampleSpecRenderer(example, getResolvedOptions(example, exampleOptions));
     }
 
     /**
@@ -417,9 +485,9 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
         VirtualFile virtualFile = fixture.createFile(fileName);
 
         WriteCommandAction.runWriteCommandAction(getProject(), () -> {
-            try {
-                byte[] bytes = IOUtils.toByteArray(content);
-                virtualFile.setBinaryContent(bytes);
+            // NOTE: streamed without an intermediate copy, the in-memory temp file system still keeps the content
+            try (OutputStream outputStream = virtualFile.getOutputStream(this)) {
+                IOUtils.copyLarge(content, outputStream);
             } catch (IOException e) {
                 LOG().error(e);
             }
@@ -442,6 +510,89 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
     default void addFullSpecExample(@NotNull SpecExampleRenderer exampleRenderer, @NotNull SpecExampleParse exampleParse, @Nullable DataHolder exampleOptions, boolean ignoredTestCase, @NotNull String html, @Nullable String ast) {
     }
 
+    /**
+     * Called from full spec reader instead of {@link #addFullSpecExample} for examples whose result is taken from
+     * the results of the already run parameterized example test
+     *
+     * @param example spec example
+     * @param result  example result
+     */
+    default void addFullSpecExampleResult(@NotNull SpecExample example, @NotNull SpecExampleResult result) {
+    }
+
+    /**
+     * Get results of examples run for this test class and spec
+     *
+     * @return example results or null if results are not reused
+     */
+    @Nullable
+    default SpecExampleResults getExampleResults() {
+        return SpecExampleResults.isEnabled() && SpecExampleResults.isReusable(getClass()) ? SpecExampleResults.getInstance(getClass(), getExample().getResourceLocation()) : null;
+    }
+
+    /**
+     * Get persistent cache of passed examples for this test class and spec
+     *
+     * @return result cache or null if not enabled
+     */
+    @Nullable
+    default SpecExampleResultCache getResultCache() {
+        return SpecExampleResultCache.isEnabled() ? SpecExampleResultCache.getInstance(getClass(), getExample().getResourceLocation()) : null;
+    }
+
+    /**
+     * Get result cache key for the example
+     *
+     * @param example spec example
+     * @param source  source used for the parse, after NO_FILE_EOL processing
+     * @param options example options
+     *
+     * @return key or null if result cache is not enabled or example is not cached
+     */
+    @Nullable
+    default String getResultCacheKey(@NotNull SpecExample example, @NotNull String source, @Nullable DataHolder options) {
+        SpecExampleResultCache cache = getResultCache();
+        if (cache == null || example.isFullSpecExample()) return null;
+
+        return cache.getKey(example, source, options, getResolvedOptions(example, options));
+    }
+
+    /**
+     * Test if the current example passed with the same inputs in a previous run, used to report the test as passed
+     * without setting up the fixture.
+     * <p>
+     * The expected html and ast of a cached example are used as its result for the full spec.
+     *
+     * @return true if example passed with the same inputs
+     */
+    default boolean isCachedPass() {
+        SpecExampleResultCache cache = getResultCache();
+        SpecExample example = getExample();
+        if (cache == null || example.isFullSpecExample()) return false;
+
+        DataHolder options;
+        try {
+            options = getExampleOptions(example);
+        } catch (RuntimeException e) {
+            // NOTE: ignored examples and option errors are reported by the test
+            return false;
+        }
+
+        String source = example.getSource();
+        if (com.vladsch.flexmark.test.util.TestUtils.NO_FILE_EOL.get(options)) {
+            source = com.vladsch.flexmark.test.util.TestUtils.trimTrailingEOL(source);
+        }
+
+        String key = getResultCacheKey(example, source, options);
+        if (key == null || !cache.isPassed(key)) return false;
+
+        SpecExampleResults results = getExampleResults();
+        if (results != null) {
+            results.put(example, new SpecExampleResult(source, example.getHtml(), example.getAst()));
+        }
+        return true;
+    }
+
     /**
      * Called from dumpSpecReader as it is accumulating tests to signal start of full test spec
      */
@@ -475,7 +626,7 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
      */
     @NotNull
     default DumpSpecReader create(@NotNull ResourceLocation location) {
-        return SpecReader.create(location, (stream, fileUrl) -> new DumpSpecReader(stream, this, fileUrl, true));
+        return SpecReader.create(location, (stream, fileUrl) -> new FullSpecReader(stream, this, fileUrl, getExampleResults()));
     }
 
     /**
@@ -659,6 +810,7 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
         ExpectedHighlightingData data = new ExpectedHighlightingData(
                 getEditor().getDocument(), checkWarnings, checkWeakWarnings, checkInfos, ignoreExtraHighlighting, TestBundle.getBundle());
         data.init();
+
         return collectAndCheckHighlighting(specRenderer, data, checkLineMarkers);
     }
 
@@ -669,16 +821,61 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
     }
 
     default com.vladsch.flexmark.util.misc.Pair<String, String> collectAndCheckHighlighting(@NotNull LightFixtureSpecRenderer<?> specRenderer, @NotNull ExpectedHighlightingData data, boolean checkLineMarkers) {
+        long phaseStart = SpecPhaseTimings.start();
         final Project project = getProject();
         EdtTestUtil.runInEdtAndWait(() -> PsiDocumentManager.getInstance(project).commitAllDocuments());
 
         PsiFileImpl file = (PsiFileImpl) getHostFile();
         FileElement hardRefToFileElement = file.calcTreeElement();//to load text
 
+        // NOTE: highlighting is shared with other rendering stages of the example and only run if the document changed
+        Document hostDocument = Objects.requireNonNull(PsiDocumentManager.getInstance(project).getDocument(file));
+        Document document = getFixture().getDocument(getFile());
+        Supplier<List<HighlightInfo>> highlighter = () -> specRenderer.getHighlightingSession().getInfos(hostDocument, () -> doCollectHighlighting(specRenderer, file));
+
+        List<HighlightInfo> infos;
+        String lineMarkers = null;
+
+        if (SpecTest.HIGHLIGHTING_CACHE.get(specRenderer.getOptions())) {
+            // NOTE: expected highlighting markup was removed by data.init(), results are checked against the snapshot
+            String cacheKey = HighlightingResultCache.getKey(getFile(), getEditor().getDocument().getImmutableCharSequence(), specRenderer.getAdditionalProjectFiles().getFiles());
+            HighlightingSnapshot snapshot = HighlightingResultCache.get(cacheKey);
+            if (snapshot == null) {
+                List<HighlightInfo> highlighted = highlighter.get();
+                snapshot = new HighlightingSnapshot(highlighted, CodeInsightFixtureSpecTestCase.getActualLineMarkerFileText(document, DaemonCodeAnalyzerImpl.getLineMarkers(document, getProject()), this::resolveIconName));
+                HighlightingResultCache.put(cacheKey, snapshot);
+            }
+            infos = snapshot.getInfos();
+            lineMarkers = snapshot.getLineMarkers();
+        } else {
+            infos = highlighter.get();
+        }
+
+        String actualInspection = "";
+        String actualLineMarkers = "";
+
+        try {
+            data.checkResult(file, infos, file.getText());
+        } catch (ComparisonFailure cf) {
+            actualInspection = cf.getActual();
+        }
+
+        if (checkLineMarkers) {
+            actualLineMarkers = lineMarkers != null ? lineMarkers : CodeInsightFixtureSpecTestCase.getActualLineMarkerFileText(document, DaemonCodeAnalyzerImpl.getLineMarkers(document, getProject()), this::resolveIconName);
+        }
+
+        ObjectUtils.reachabilityFence(hardRefToFileElement);
+        SpecPhaseTimings.stop(SpecPhaseTimings.HIGHLIGHTING, phaseStart);
+        return com.vladsch.flexmark.util.misc.Pair.of(actualInspection, actualLineMarkers);
+    }
+
+    @NotNull
+    default List<HighlightInfo> doCollectHighlighting(@NotNull LightFixtureSpecRenderer<?> specRenderer, @NotNull PsiFile file) {
+        final Project project = getProject();
+
         // to load AST for changed files before it's prohibited by "fileTreeAccessFilter"
-        CodeInsightTestFixtureImpl.ensureIndexesUpToDate(project);
+        IndexFlushTracker.ensureUpToDate(project, file);
 
-        final long start = System.currentTimeMillis();
         final VirtualFile virtualFile = file.getVirtualFile();
 
         // NOTE: needed to simulate getting code analyzer topic
@@ -707,30 +904,31 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
             Disposer.dispose(disposable);
         }
         //    ProfilingUtil.captureCPUSnapshot("testing");
-        final long elapsed = System.currentTimeMillis() - start;
-
-        String actualInspection = "";
-        String actualLineMarkers = "";
+        return infos;
+    }
 
+    default void defaultTestCase() {
+        long start = System.nanoTime();
+        SpecLeakDetector.startExample(getClass(), getExample());
+        SpecPhaseTimings.startExample(getClass(), getExample());
         try {
-            data.checkResult(file, infos, file.getText());
-        } catch (ComparisonFailure cf) {
-            actualInspection = cf.getActual();
-        }
+            doDefaultTestCase();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            SpecPhaseTimings.finishExample(elapsed);
+            SpecLeakDetector.finishExample();
 
-        if (checkLineMarkers) {
-            Document document = getFixture().getDocument(getFile());
-            actualLineMarkers = CodeInsightFixtureSpecTestCase.getActualLineMarkerFileText(document, DaemonCodeAnalyzerImpl.getLineMarkers(document, getProject()), this::resolveIconName);
+            if (SpecExampleTimings.isRecordingEnabled()) {
+                SpecExampleTimings.getInstance(getExample().getResourceLocation()).record(getExample(), elapsed);
+            }
         }
-
-        ObjectUtils.reachabilityFence(hardRefToFileElement);
-        return com.vladsch.flexmark.util.misc.Pair.of(actualInspection, actualLineMarkers);
     }
 
-    default void defaultTestCase() {
+    default void doDefaultTestCase() {
         ApplicationManager.getApplication().invokeAndWait(() -> {
             String expected;
             String actual;
+            String resultCacheKey = null;
 
             SpecExample example = getExample();
             boolean isFullSpec = example.isFullSpecExample();
@@ -741,16 +939,44 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
                 ResourceLocation location = example.getResourceLocation();
                 DumpSpecReader reader = create(location);
 
-                reader.readExamples();
+                FullSpecReader streamingReader = reader instanceof FullSpecReader && FullSpecReader.isStreamingEnabled() ? (FullSpecReader) reader : null;
+                if (streamingReader != null) {
+                    streamingReader.startStreaming(getClass().getSimpleName() + "_" + location.getResourcePath());
+                }
+
+                try {
+                    reader.readExamples();
+
+                    fullTestSpecComplete();
 
-                fullTestSpecComplete();
+                    if (streamingReader != null) streamingReader.finishStreaming();
+                } finally {
+                    // NOTE: no-op after finishStreaming(), otherwise releases output files
+                    if (streamingReader != null) streamingReader.closeStreaming();
+                }
+
+                // results are no longer needed
+                SpecExampleResults results = getExampleResults();
+                if (results != null) results.clear();
 
                 // NOTE: reading the full spec does not work when examples are modified by checkExample()
-                actual = reader.getFullSpec();
-                expected = reader.getExpectedFullSpec();
+                if (streamingReader != null) {
+                    // only differing example windows are compared, full text is in the actual file
+                    actual = streamingReader.getActualWindows();
+                    expected = streamingReader.getExpectedWindows();
+
+                    if (streamingReader.getDiffCount() > 0) {
+                        System.out.println(String.format("Full Spec: %d differing example(s), actual full spec: %s", streamingReader.getDiffCount(), streamingReader.getActualFile()));
+                    }
+                } else {
+                    actual = reader.getFullSpec();
+                    expected = reader.getExpectedFullSpec();
+                }
             } else {
-                DataHolder options = com.vladsch.flexmark.test.util.TestUtils.getOptions(example, example.getOptionsSet(), this::options);
+                long phaseStart = SpecPhaseTimings.start();
+                DataHolder options = getExampleOptions(example);
                 LightFixtureSpecRenderer<?> exampleRenderer = getSpecExampleRenderer(example, options);
+                SpecPhaseTimings.stop(SpecPhaseTimings.OPTIONS, phaseStart);
 
                 if (options != null && com.vladsch.flexmark.test.util.TestUtils.FAIL.get(options)) {
                     getThrown().expect(CodeInsightFixtureSpecTestCase.EXCEPTION_MATCHER);
@@ -761,15 +987,21 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
                     source = com.vladsch.flexmark.test.util.TestUtils.trimTrailingEOL(source);
                 }
 
+                phaseStart = SpecPhaseTimings.start();
                 exampleRenderer.parse(source);
                 exampleRenderer.finalizeDocument();
+                SpecPhaseTimings.stop(SpecPhaseTimings.PARSE, phaseStart);
 
                 String expectedHtml = example.getHtml();
+                phaseStart = SpecPhaseTimings.start();
                 String actualHtml = exampleRenderer.getHtml();
+                SpecPhaseTimings.stop(SpecPhaseTimings.RENDER_HTML, phaseStart);
                 String expectedAst = example.getAst();
 
                 // NOTE: null for section signals section does not exist. Adding "" AST will always add AST section if one did not exist in the spec example
+                phaseStart = SpecPhaseTimings.start();
                 String actualAst = (expectedAst != null) ? exampleRenderer.getAst() : null;
+                SpecPhaseTimings.stop(SpecPhaseTimings.RENDER_AST, phaseStart);
 
                 if (example.getSection() != null) {
                     StringBuilder outExpected = new StringBuilder();
@@ -784,13 +1016,22 @@ public interface CodeInsightFixtureSpecTestCase extends SpecTest {
                     expected = com.vladsch.flexmark.test.util.TestUtils.addSpecExample(true, source, expectedHtml, expectedAst, example.getOptionsSet());
                     actual = com.vladsch.flexmark.test.util.TestUtils.addSpecExample(true, source, actualHtml, actualAst, example.getOptionsSet());
                 }
-            }
 
-            if (!expected.equals(actual)) {
-                System.out.println(CodeInsightFixtureSpecTestCase.getExampleName(example) + " Test Failed, " + example.getFileUrlWithLineNumber());
+                SpecExampleResults results = getExampleResults();
+                if (results != null && (options == null || !com.vladsch.flexmark.test.util.TestUtils.FAIL.get(options))) {
+                    // NOTE: EMBED_TIMED timings are not compared, they are added to the full spec before the example
+                    results.put(example, new SpecExampleResult(source, actualHtml, actualAst, exampleRenderer.getEmbeddedTimings()));
+                }
+
+                resultCacheKey = getResultCacheKey(example, source, options);
             }
 
-            TestCase.assertEquals("\n", expected, actual);
+            SpecDiffReport.assertEquals(getClass().getSimpleName(), example, expected, actual);
+
+            if (resultCacheKey != null) {
+                SpecExampleResultCache cache = getResultCache();
+                if (cache != null) cache.passed(resultCacheKey);
+            }
         });
     }
 
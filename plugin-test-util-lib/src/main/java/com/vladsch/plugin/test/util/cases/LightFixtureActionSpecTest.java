@@ -5,12 +5,12 @@ import com.vladsch.flexmark.test.util.spec.SpecExample;
 import com.vladsch.flexmark.util.data.DataHolder;
 import com.vladsch.flexmark.util.data.DataKey;
 import com.vladsch.flexmark.util.data.MutableDataSet;
+import com.vladsch.plugin.test.util.OptionsRegistry;
 import com.vladsch.plugin.test.util.TestIdeActions;
 import com.vladsch.plugin.test.util.renderers.ActionSpecRenderer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public interface LightFixtureActionSpecTest extends CodeInsightFixtureSpecTestCase, TestIdeActions {
@@ -24,29 +24,29 @@ public interface LightFixtureActionSpecTest extends CodeInsightFixtureSpecTestCa
     String TYPE_ACTION = "type";
     String SKIP_ACTION = "no-op";
 
-    Map<String, DataHolder> optionsMap = new HashMap<>();
+    OptionsRegistry OPTIONS = OptionsRegistry.builder(CodeInsightFixtureSpecTestCase.OPTIONS)
+            .add("type-comma", new MutableDataSet().set(ACTION_NAME, ","))
+            .add("backspace", new MutableDataSet().set(ACTION_NAME, backspace))
+            .add("show-clipboard", new MutableDataSet().set(CLIPBOARD_CONTENT, true))
+            .add("enter", new MutableDataSet().set(ACTION_NAME, enter))
+            .add("copy", new MutableDataSet().set(ACTION_NAME, copy))
+            .add("paste", new MutableDataSet().set(ACTION_NAME, paste))
+            .add("tab", new MutableDataSet().set(ACTION_NAME, tab))
+            .add("back-tab", new MutableDataSet().set(ACTION_NAME, backtab))
+            .add("type", new MutableDataSet().set(TestUtils.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, LightFixtureActionSpecTest::typeOption)))
+            .add("clipboard", new MutableDataSet().set(TestUtils.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, LightFixtureActionSpecTest::clipboardOption)))
+            .add("clipboard-file-url", new MutableDataSet().set(TestUtils.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, LightFixtureActionSpecTest::clipboardFileUrl)))
+            .add("inject", new MutableDataSet().set(TestUtils.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, LightFixtureActionSpecTest::injectOption)))
+            .add("repeat", new MutableDataSet().set(TestUtils.CUSTOM_OPTION, (option, params) -> TestUtils.customIntOption(option, params, LightFixtureActionSpecTest::repeatOption)))
+            .build();
+
+    /**
+     * Immutable options map of {@link #OPTIONS}
+     */
+    Map<String, DataHolder> optionsMap = OPTIONS.getOptions();
 
     static Map<String, DataHolder> getOptionsMap() {
-        synchronized (optionsMap) {
-            if (optionsMap.isEmpty()) {
-                optionsMap.putAll(CodeInsightFixtureSpecTestCase.getOptionsMap());
-                
-                optionsMap.put("type-comma", new MutableDataSet().set(ACTION_NAME, ","));
-                optionsMap.put("backspace", new MutableDataSet().set(ACTION_NAME, backspace));
-                optionsMap.put("show-clipboard", new MutableDataSet().set(CLIPBOARD_CONTENT, true));
-                optionsMap.put("enter", new MutableDataSet().set(ACTION_NAME, enter));
-                optionsMap.put("copy", new MutableDataSet().set(ACTION_NAME, copy));
-                optionsMap.put("paste", new MutableDataSet().set(ACTION_NAME, paste));
-                optionsMap.put("tab", new MutableDataSet().set(ACTION_NAME, tab));
-                optionsMap.put("back-tab", new MutableDataSet().set(ACTION_NAME, backtab));
-                optionsMap.put("type", new MutableDataSet().set(TestUtils.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, LightFixtureActionSpecTest::typeOption)));
-                optionsMap.put("clipboard", new MutableDataSet().set(TestUtils.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, LightFixtureActionSpecTest::clipboardOption)));
-                optionsMap.put("clipboard-file-url", new MutableDataSet().set(TestUtils.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, LightFixtureActionSpecTest::clipboardFileUrl)));
-                optionsMap.put("inject", new MutableDataSet().set(TestUtils.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, LightFixtureActionSpecTest::injectOption)));
-                optionsMap.put("repeat", new MutableDataSet().set(TestUtils.CUSTOM_OPTION, (option, params) -> TestUtils.customIntOption(option, params, LightFixtureActionSpecTest::repeatOption)));
-            }
-            return optionsMap;
-        }
+        return OPTIONS.getOptions();
     }
 
     static DataHolder repeatOption(@Nullable Integer params) {
@@ -107,6 +107,9 @@ public interface LightFixtureActionSpecTest extends CodeInsightFixtureSpecTestCa
 
     /**
      * Load extra settings and initialize spec renderer for parse
+     * <p>
+     * NOTE: for TIMED and EMBED_TIMED examples this is called again after {@link #afterDoTestAction} before each
+     * measured run of the action, so it must be repeatable
      *
      * @param <T>                 spec renderer type
      * @param specRenderer        spec renderer
@@ -116,6 +119,8 @@ public interface LightFixtureActionSpecTest extends CodeInsightFixtureSpecTestCa
 
     /**
      * Reset extra settings for next test and clean up any resources
+     * <p>
+     * NOTE: for TIMED and EMBED_TIMED examples this is also called after each measured run of the action
      *
      * @param <T>                 spec renderer type
      * @param specRenderer        spec renderer
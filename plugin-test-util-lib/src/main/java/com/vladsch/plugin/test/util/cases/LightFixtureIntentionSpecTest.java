@@ -21,11 +21,11 @@ import com.vladsch.flexmark.util.data.DataHolder;
 import com.vladsch.flexmark.util.data.DataKey;
 import com.vladsch.flexmark.util.data.MutableDataSet;
 import com.vladsch.flexmark.util.data.NullableDataKey;
+import com.vladsch.plugin.test.util.OptionsRegistry;
 import com.vladsch.plugin.test.util.renderers.IntentionSpecRenderer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public interface LightFixtureIntentionSpecTest extends LightFixtureActionSpecTest {
@@ -36,19 +36,19 @@ public interface LightFixtureIntentionSpecTest extends LightFixtureActionSpecTes
     DataKey<String> INTENTION_ACTION = new DataKey<>("INTENTION_ACTION", "");
     NullableDataKey<String> FILE_PARAM = new NullableDataKey<>("FILE_PARAM", (String) null);
 
-    Map<String, DataHolder> optionsMap = new HashMap<>();
+    OptionsRegistry OPTIONS = OptionsRegistry.builder(LightFixtureActionSpecTest.OPTIONS)
+            .add("intention", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, LightFixtureIntentionSpecTest::intentionOption))
+            .add("file-param", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, LightFixtureIntentionSpecTest::fileParamOption))
+            .add("caret-markup", new MutableDataSet().set(CodeInsightFixtureSpecTestCase.TEST_CARET_MARKUP, true))
+            .build();
+
+    /**
+     * Immutable options map of {@link #OPTIONS}
+     */
+    Map<String, DataHolder> optionsMap = OPTIONS.getOptions();
 
     static Map<String, DataHolder> getOptionsMap() {
-        synchronized (optionsMap) {
-            if (optionsMap.isEmpty()) {
-                optionsMap.putAll(LightFixtureActionSpecTest.getOptionsMap());
-                
-                optionsMap.put("intention", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, LightFixtureIntentionSpecTest::intentionOption));
-                optionsMap.put("file-param", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, LightFixtureIntentionSpecTest::fileParamOption));
-                optionsMap.put("caret-markup", new MutableDataSet().set(CodeInsightFixtureSpecTestCase.TEST_CARET_MARKUP, true));
-            }
-            return optionsMap;
-        }
+        return OPTIONS.getOptions();
     }
 
     static DataHolder intentionOption(@NotNull String option, @Nullable String params) {
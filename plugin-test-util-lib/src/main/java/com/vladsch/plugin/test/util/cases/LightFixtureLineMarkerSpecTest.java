@@ -20,26 +20,41 @@ import com.vladsch.flexmark.test.util.spec.SpecExample;
 import com.vladsch.flexmark.util.data.DataHolder;
 import com.vladsch.flexmark.util.data.DataKey;
 import com.vladsch.flexmark.util.data.MutableDataSet;
+import com.vladsch.plugin.test.util.OptionsRegistry;
 import com.vladsch.plugin.test.util.renderers.LineMarkerSpecRenderer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public interface LightFixtureLineMarkerSpecTest extends CodeInsightFixtureSpecTestCase {
-    Map<String, DataHolder> optionsMap = new HashMap<>();
     DataKey<String> DISABLE_ONE = new DataKey<>("DISABLE_ONE_TEXT", "");
 
-    static Map<String, DataHolder> getOptionsMap() {
-        synchronized (optionsMap) {
-            if (optionsMap.isEmpty()) {
-                optionsMap.putAll(CodeInsightFixtureSpecTestCase.getOptionsMap());
+    /**
+     * Collect line markers for {@link #DISABLE_ONE} once with the providers of all options enabled and filter out markers
+     * of the disabled providers for each option. Markers are attributed to providers by running each provider on the
+     * file. Options are highlighted separately if markers of providers differ from highlighted markers, such as with
+     * injected fragments, or if an option changes a provider option instead of a provider.
+     */
+    DataKey<Boolean> DISABLE_ONE_SINGLE_PASS = new DataKey<>("DISABLE_ONE_SINGLE_PASS", false);
 
-                optionsMap.put("disable-one", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, LightFixtureLineMarkerSpecTest::disableOneOption)));
-            }
-            return optionsMap;
-        }
+    /**
+     * Verify {@link #DISABLE_ONE_SINGLE_PASS} results by also highlighting with each option, differences fail the example.
+     * Used to check that line markers of providers of a spec do not depend on other providers.
+     */
+    DataKey<Boolean> DISABLE_ONE_VERIFY = new DataKey<>("DISABLE_ONE_VERIFY", false);
+
+    OptionsRegistry OPTIONS = OptionsRegistry.builder(CodeInsightFixtureSpecTestCase.OPTIONS)
+            .add("disable-one", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, LightFixtureLineMarkerSpecTest::disableOneOption)))
+            .build();
+
+    /**
+     * Immutable options map of {@link #OPTIONS}
+     */
+    Map<String, DataHolder> optionsMap = OPTIONS.getOptions();
+
+    static Map<String, DataHolder> getOptionsMap() {
+        return OPTIONS.getOptions();
     }
 
     static DataHolder disableOneOption(@Nullable String params) {
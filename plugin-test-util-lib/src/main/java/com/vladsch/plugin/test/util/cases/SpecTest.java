@@ -27,12 +27,16 @@ import com.vladsch.flexmark.util.misc.CharPredicate;
 import com.vladsch.flexmark.util.sequence.BasedSequence;
 import com.vladsch.flexmark.util.sequence.SequenceUtils;
 import com.vladsch.plugin.test.util.AdditionalProjectFiles;
+import com.vladsch.plugin.test.util.CodeStyleSettingsPool;
 import com.vladsch.plugin.test.util.DebugLogSettings;
+import com.vladsch.plugin.test.util.HighlightingResultCache;
 import com.vladsch.plugin.test.util.LineMarkerSettings;
+import com.vladsch.plugin.test.util.OptionsRegistry;
+import com.vladsch.plugin.test.util.ReusedAdditionalFiles;
 import com.vladsch.plugin.test.util.SpecTestSetup;
+import com.vladsch.plugin.test.util.WarmFixtures;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
@@ -45,6 +49,11 @@ public interface SpecTest extends SpecExampleProcessor {
     DataKey<Integer> TIMED_ITERATIONS = TestUtils.TIMED_ITERATIONS;
     DataKey<Boolean> EMBED_TIMED = TestUtils.EMBED_TIMED;
     DataKey<Boolean> TIMED = TestUtils.TIMED;
+
+    /**
+     * Number of runs of a timed operation before its latency is measured over {@link #TIMED_ITERATIONS} runs
+     */
+    DataKey<Integer> TIMED_WARMUP = new DataKey<>("TIMED_WARMUP", 5);
     DataKey<Boolean> WANT_AST = new DataKey<>("WANT_AST", false);
     DataKey<Boolean> WANT_QUICK_FIXES = new DataKey<>("WANT_QUICK_FIXES", false);
     DataKey<Boolean> WANT_RANGES = new DataKey<>("WANT_RANGES", false);
@@ -59,6 +68,32 @@ public interface SpecTest extends SpecExampleProcessor {
 
     DataKey<BiFunction<String, String, DataHolder>> CUSTOM_OPTION = TestUtils.CUSTOM_OPTION;
 
+    /**
+     * Copy-on-write code style settings, set in default options of a test class to use main project code style
+     * settings for examples without {@link #CODE_STYLE_SETTINGS} and pooled clones for the rest, see {@link CodeStyleSettingsPool}.
+     * An example which modifies these shared settings directly fails if -Dplugin.test.util.code-style-check=true.
+     */
+    DataKey<Boolean> CODE_STYLE_COPY_ON_WRITE = new DataKey<>("CODE_STYLE_COPY_ON_WRITE", false);
+
+    /**
+     * Keep additional project files in the project across examples, set in default options of a test class to
+     * create, update or delete only files which differ from the previous example, see {@link ReusedAdditionalFiles}.
+     * Only used with {@link #WARM_FIXTURE}, otherwise the project temp dir is deleted after each example.
+     */
+    DataKey<Boolean> REUSE_ADDITIONAL_FILES = new DataKey<>("REUSE_ADDITIONAL_FILES", false);
+
+    /**
+     * Keep the light fixture, project and module across examples of a test class, set in default options of a light
+     * test class. State left over by an example is verified after each example, see {@link WarmFixtures}
+     */
+    DataKey<Boolean> WARM_FIXTURE = new DataKey<>("WARM_FIXTURE", false);
+
+    /**
+     * Reuse highlighting results of examples with the same text and highlighting settings, set in default options of a
+     * test class whose highlighting depends only on the example file, its settings and additional files, see {@link HighlightingResultCache}
+     */
+    DataKey<Boolean> HIGHLIGHTING_CACHE = new DataKey<>("HIGHLIGHTING_CACHE", false);
+
     /**
      * Example source name overrides example generated name and extension
      */
@@ -68,23 +103,25 @@ public interface SpecTest extends SpecExampleProcessor {
      */
     DataKey<String> EXAMPLE_SOURCE_EXTENSION = new DataKey<>("EXAMPLE_SOURCE_EXTENSION", ".md");
 
-    Map<String, DataHolder> optionsMap = new HashMap<>();
+    OptionsRegistry OPTIONS = OptionsRegistry.builder()
+            .add("with-ast", new MutableDataSet().set(SpecTest.WANT_AST, true))
+            .add("with-ranges", new MutableDataSet().set(SpecTest.WANT_RANGES, true))
+            .add("with-quick-fixes", new MutableDataSet().set(SpecTest.WANT_QUICK_FIXES, true))
+            .add("no-ast", new MutableDataSet().set(SpecTest.WANT_AST, false))
+            .add("no-ranges", new MutableDataSet().set(SpecTest.WANT_RANGES, false))
+            .add("no-quick-fixes", new MutableDataSet().set(SpecTest.WANT_QUICK_FIXES, false))
+            .add("source-extension", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, SpecTest::sourceExtensionOption)))
+            .add("source-name", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, SpecTest::sourceNameOption)))
+            .add("log", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, SpecTest::debugLogOption)))
+            .build();
+
+    /**
+     * Immutable options map of {@link #OPTIONS}
+     */
+    Map<String, DataHolder> optionsMap = OPTIONS.getOptions();
 
     static Map<String, DataHolder> getOptionsMap() {
-        synchronized (optionsMap) {
-            if (optionsMap.isEmpty()) {
-                optionsMap.put("with-ast", new MutableDataSet().set(SpecTest.WANT_AST, true));
-                optionsMap.put("with-ranges", new MutableDataSet().set(SpecTest.WANT_RANGES, true));
-                optionsMap.put("with-quick-fixes", new MutableDataSet().set(SpecTest.WANT_QUICK_FIXES, true));
-                optionsMap.put("no-ast", new MutableDataSet().set(SpecTest.WANT_AST, false));
-                optionsMap.put("no-ranges", new MutableDataSet().set(SpecTest.WANT_RANGES, false));
-                optionsMap.put("no-quick-fixes", new MutableDataSet().set(SpecTest.WANT_QUICK_FIXES, false));
-                optionsMap.put("source-extension", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, SpecTest::sourceExtensionOption)));
-                optionsMap.put("source-name", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, SpecTest::sourceNameOption)));
-                optionsMap.put("log", new MutableDataSet().set(SpecTest.CUSTOM_OPTION, (option, params) -> TestUtils.customStringOption(option, params, SpecTest::debugLogOption)));
-            }
-            return optionsMap;
-        }
+        return OPTIONS.getOptions();
     }
 
     static DataHolder debugLogOption(@Nullable String params) {
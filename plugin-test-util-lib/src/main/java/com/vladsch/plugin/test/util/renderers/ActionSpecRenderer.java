@@ -106,6 +106,13 @@ public class ActionSpecRenderer<T extends LightFixtureActionSpecTest> extends Li
         return myResultFile == null ? getFile() : myResultFile;
     }
 
+    protected void executeRendererAction(@NotNull String action, int repeat) {
+        int i = repeat;
+        while (i-- > 0) {
+            executeRendererAction(action);
+        }
+    }
+
     protected void executeRendererAction(@NotNull String action) {
         //noinspection SwitchStatementWithTooFewBranches
         switch (action) {
@@ -239,22 +246,14 @@ public class ActionSpecRenderer<T extends LightFixtureActionSpecTest> extends Li
         } else if (!action.equals(SKIP_ACTION)) {
             try {
                 mySpecTest.beforeDoTestAction(this, myOptions);
+                setClipboardContents();
 
-                String clipboardFileUrl = CLIPBOARD_FILE_URL.get(myOptions);
-                String clipboardText = CLIPBOARD_TEXT.get(myOptions);
-                if (!clipboardFileUrl.isEmpty()) {
-                    VirtualFile virtualFile = myAdditionalVirtualFiles.get(clipboardFileUrl);
-                    assert virtualFile != null : "File: " + clipboardFileUrl + " not found in additional virtual files: " + myAdditionalVirtualFiles;
-
-                    TextTransferable transferable = new TextTransferable(virtualFile.getUrl() + clipboardText);
-                    Toolkit.getDefaultToolkit().getSystemClipboard().setContents(transferable, null);
-                    CopyPasteManager.getInstance().setContents(transferable);
-                } else if (!clipboardText.isEmpty()) {
-                    // need to place it on the clipboard
-                    TextTransferable transferable = new TextTransferable(clipboardText);
-                    Toolkit.getDefaultToolkit().getSystemClipboard().setContents(transferable, null);
-                    CopyPasteManager.getInstance().setContents(transferable);
-                }
+                // NOTE: measured runs of the action start from the same state as the example action
+                Runnable prepare = () -> {
+                    mySpecTest.beforeDoTestAction(this, myOptions);
+                    setClipboardContents();
+                };
+                Runnable cleanup = () -> mySpecTest.afterDoTestAction(this, myOptions);
 
                 int repeat = ACTION_REPEAT.get(myOptions);
                 assert repeat >= 0 : "ACTION_REPEAT should be >= 0";
@@ -262,19 +261,15 @@ public class ActionSpecRenderer<T extends LightFixtureActionSpecTest> extends Li
                 if (action.equals(TYPE_ACTION)) {
                     String text = TYPE_ACTION_TEXT.get(myOptions);
                     if (!text.isEmpty()) {
-                        if (repeat > 1) {
-                            type(RepeatedSequence.repeatOf(text, repeat).toString());
-                        } else {
-                            type(text);
-                        }
+                        String typedText = repeat > 1 ? RepeatedSequence.repeatOf(text, repeat).toString() : text;
+                        measureAction("type", prepare, cleanup, () -> type(typedText));
+                        type(typedText);
                     } else {
                         assertEquals(getExample().getFileUrlWithLineNumber() + "\nTYPE_ACTION_TEXT cannot be empty for TYPE_ACTION", "text to type", "");
                     }
                 } else {
-                    int i = repeat;
-                    while (i-- > 0) {
-                        executeRendererAction(action);
-                    }
+                    measureAction("action " + action, prepare, cleanup, () -> executeRendererAction(action, repeat));
+                    executeRendererAction(action, repeat);
                 }
             } catch (Throwable t) {
                 html.append(t.getMessage()).append("\n");
@@ -286,6 +281,24 @@ public class ActionSpecRenderer<T extends LightFixtureActionSpecTest> extends Li
         }
     }
 
+    void setClipboardContents() {
+        String clipboardFileUrl = CLIPBOARD_FILE_URL.get(myOptions);
+        String clipboardText = CLIPBOARD_TEXT.get(myOptions);
+        if (!clipboardFileUrl.isEmpty()) {
+            VirtualFile virtualFile = myAdditionalVirtualFiles.get(clipboardFileUrl);
+            assert virtualFile != null : "File: " + clipboardFileUrl + " not found in additional virtual files: " + myAdditionalVirtualFiles;
+
+            TextTransferable transferable = new TextTransferable(virtualFile.getUrl() + clipboardText);
+            Toolkit.getDefaultToolkit().getSystemClipboard().setContents(transferable, null);
+            CopyPasteManager.getInstance().setContents(transferable);
+        } else if (!clipboardText.isEmpty()) {
+            // need to place it on the clipboard
+            TextTransferable transferable = new TextTransferable(clipboardText);
+            Toolkit.getDefaultToolkit().getSystemClipboard().setContents(transferable, null);
+            CopyPasteManager.getInstance().setContents(transferable);
+        }
+    }
+
     @NotNull
     @Override
     public String renderHtml() {
@@ -92,7 +92,9 @@ public class IntentionSpecRenderer<T extends LightFixtureIntentionSpecTest> exte
             }
 
             mySpecTest.beforeDoTestAction(this, myOptions);
-            launchAction(list.get(0));
+            IntentionAction action = list.get(0);
+            measureAction("intention " + action.getText(), () -> mySpecTest.beforeDoTestAction(this, myOptions), () -> mySpecTest.afterDoTestAction(this, myOptions), () -> launchAction(action));
+            launchAction(action);
             mySpecTest.afterDoTestAction(this, myOptions);
 
             html.append(getResultTextWithMarkup(true, CodeInsightFixtureSpecTestCase.TEST_CARET_MARKUP.get(myOptions)));
@@ -100,6 +102,7 @@ public class IntentionSpecRenderer<T extends LightFixtureIntentionSpecTest> exte
         } else {
             // do comparison of what is there
             Pair<String, String> highlighting = mySpecTest.collectAndCheckHighlighting(this, false, true, true, true, false);
+            measureHighlighting("highlighting");
             return highlighting.getFirst();
         }
     }
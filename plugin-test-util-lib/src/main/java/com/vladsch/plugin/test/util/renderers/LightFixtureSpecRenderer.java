@@ -16,6 +16,7 @@
 package com.vladsch.plugin.test.util.renderers;
 
 import com.intellij.codeInsight.completion.CompletionType;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.codeInsight.daemon.GutterMark;
 import com.intellij.codeInsight.daemon.impl.HighlightInfo;
 import com.intellij.codeInsight.intention.IntentionAction;
@@ -35,6 +36,7 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.Presentation;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.CaretState;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.Inlay;
@@ -44,6 +46,7 @@ import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
@@ -68,8 +71,16 @@ import com.vladsch.flexmark.util.sequence.BasedSequence;
 import com.vladsch.flexmark.util.sequence.Range;
 import com.vladsch.flexmark.util.sequence.builder.BasedSegmentBuilder;
 import com.vladsch.plugin.test.util.AdditionalProjectFiles;
+import com.vladsch.plugin.test.util.CodeStyleSettingsPool;
 import com.vladsch.plugin.test.util.DebugLogSettings;
+import com.vladsch.plugin.test.util.HighlightingSession;
+import com.vladsch.plugin.test.util.IndexFlushTracker;
 import com.vladsch.plugin.test.util.IntentionInfo;
+import com.vladsch.plugin.test.util.ReusedAdditionalFiles;
+import com.vladsch.plugin.test.util.SpecLatency;
+import com.vladsch.plugin.test.util.SpecLeakDetector;
+import com.vladsch.plugin.test.util.SpecPhaseTimings;
+import com.vladsch.plugin.test.util.SpecTestProperties;
 import com.vladsch.plugin.test.util.SpecTestSetup;
 import com.vladsch.plugin.test.util.cases.CodeInsightFixtureSpecTestCase;
 import com.vladsch.plugin.test.util.cases.SpecTest;
@@ -85,9 +96,11 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.KeyStroke;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -103,8 +116,15 @@ public abstract class LightFixtureSpecRenderer<T extends CodeInsightFixtureSpecT
 
     protected final StringBuilder ast = new StringBuilder();
     protected final StringBuilder html = new StringBuilder();
-    private List<DebugLogManager.Category> mySavedCategories;
+    private @Nullable List<DebugLogManager.Category> myClearedCategories;
+    private @Nullable List<DebugLogManager.Category> myAppliedCategories;
     private DebugLogSettings myDebugLogSettings;
+    private @Nullable ReusedAdditionalFiles myReusedAdditionalFiles;
+    private @Nullable CodeStyleSettings mySharedCodeStyleSettings;
+    private @Nullable String mySharedCodeStyleState;
+    private final @NotNull HighlightingSession myHighlightingSession = new HighlightingSession();
+    private final @NotNull StringBuilder myTimings = new StringBuilder();
+    private final @NotNull HashSet<String> myMeasured = new HashSet<>();
 
     public LightFixtureSpecRenderer(@NotNull T specTest, @NotNull SpecExample example, @Nullable DataHolder options) {
         super(example, options, true);
@@ -120,17 +140,113 @@ public abstract class LightFixtureSpecRenderer<T extends CodeInsightFixtureSpecT
         return myAdditionalProjectFiles;
     }
 
+    /**
+     * @return highlighting shared by rendering stages of the example
+     */
+    @NotNull
+    public HighlightingSession getHighlightingSession() {
+        return myHighlightingSession;
+    }
+
     @NotNull
     public List<IntentionInfo> getAvailableIntentionsWithRanges(boolean atCaretOnly) {
         // NOTE: needed to simulate getting code analyzer topic
         PsiFile file = getHostFileAtCaret();
 
         mySpecTest.beforeDoHighlighting(this, file);
-        doHighlighting();
+        myHighlightingSession.getInfos(getHostEditor().getDocument(), this::doHighlighting);
 
         return ReadAction.compute(() -> mySpecTest.getAvailableIntentionsWithRanges(this, getHostEditor(), file, atCaretOnly));
     }
 
+    /**
+     * @return true if latency of operations is measured, see {@link SpecTest#TIMED} and {@link SpecTest#EMBED_TIMED}
+     */
+    public boolean isTimed() {
+        return SpecTest.TIMED.get(myOptions) || SpecTest.EMBED_TIMED.get(myOptions);
+    }
+
+    /**
+     * @return latency text of measured operations to embed in the full spec before the example, empty if not
+     *         {@link SpecTest#EMBED_TIMED}
+     */
+    @NotNull
+    public String getEmbeddedTimings() {
+        return myTimings.toString();
+    }
+
+    /**
+     * Measure latency of an operation once per example, printed if {@link SpecTest#TIMED} and embedded in the full spec
+     * if {@link SpecTest#EMBED_TIMED}, timings are not part of example output so they are never compared
+     *
+     * @param operation operation name
+     * @param setup     run before each run and not measured, null if none
+     * @param runnable  operation
+     */
+    protected void measureLatency(@NotNull String operation, @Nullable Runnable setup, @NotNull Runnable runnable) {
+        if (!isTimed() || !myMeasured.add(operation)) return;
+
+        String text = SpecLatency.measure(operation, SpecTest.TIMED_WARMUP.get(myOptions), SpecTest.TIMED_ITERATIONS.get(myOptions), setup, runnable);
+        if (SpecTest.TIMED.get(myOptions)) System.out.println(CodeInsightFixtureSpecTestCase.getExampleName(myExample) + " " + text);
+        if (SpecTest.EMBED_TIMED.get(myOptions)) myTimings.append(text).append("\n");
+    }
+
+    /**
+     * Measure latency of highlighting the host file, the daemon is restarted before each run
+     *
+     * @param operation operation name
+     */
+    protected void measureHighlighting(@NotNull String operation) {
+        if (!isTimed()) return;
+
+        PsiFile hostFile = mySpecTest.getHostFile();
+        measureLatency(operation, () -> DaemonCodeAnalyzer.getInstance(getProject()).restart(hostFile), () -> mySpecTest.doCollectHighlighting(this, hostFile));
+
+        // NOTE: highlights in the markup model were replaced by measured runs
+        myHighlightingSession.invalidate();
+    }
+
+    /**
+     * Measure latency of an action, each run starts from the same state so the action can be run for the example result
+     * after measurement
+     * <p>
+     * Before each run and after measurement cleanup of the previous run is called, document text, carets and selections
+     * are restored and prepare is called. Only side effects undone by these are reverted, actions with other side effects,
+     * such as creating files or changing settings not reset by cleanup, must not be measured. Prepare and cleanup are
+     * called in pairs after the caller's prepare, so they must be repeatable. Nothing is done if the operation was
+     * already measured for the example.
+     *
+     * @param operation operation name
+     * @param prepare   prepares state for a run, as done before the action of the example, null if none
+     * @param cleanup   cleans up state after a run, as done after the action of the example, null if none
+     * @param action    action
+     */
+    protected void measureAction(@NotNull String operation, @Nullable Runnable prepare, @Nullable Runnable cleanup, @NotNull Runnable action) {
+        if (!isTimed() || myMeasured.contains(operation)) return;
+
+        Editor editor = getHostEditor();
+        Document document = editor.getDocument();
+        String text = document.getText();
+        List<CaretState> caretStates = editor.getCaretModel().getCaretsAndSelections();
+
+        // NOTE: state for the first run was prepared by the caller
+        boolean[] isPrepared = { true };
+        Runnable restore = () -> {
+            if (isPrepared[0] && cleanup != null) cleanup.run();
+            isPrepared[0] = false;
+
+            WriteCommandAction.runWriteCommandAction(getProject(), () -> document.setText(text));
+            PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+            editor.getCaretModel().setCaretsAndSelections(caretStates);
+
+            if (prepare != null) prepare.run();
+            isPrepared[0] = true;
+        };
+
+        measureLatency(operation, restore, action);
+        restore.run();
+    }
+
     @NotNull
     protected Editor getHostEditor() {
         Editor editor = getEditor();
@@ -174,7 +290,7 @@ public abstract class LightFixtureSpecRenderer<T extends CodeInsightFixtureSpecT
     }
 
     protected void renderQuickFixesText(StringBuilder out) {
-        List<IntentionAction> intentions = getAllQuickFixes();
+        List<IntentionAction> intentions = myHighlightingSession.getQuickFixes(getHostEditor().getDocument(), this::doHighlighting);
         for (IntentionAction intention : intentions) {
             out.append("intention[").append(intention.getText()).append("]\n");
         }
@@ -229,6 +345,11 @@ public abstract class LightFixtureSpecRenderer<T extends CodeInsightFixtureSpecT
 
     protected void renderIntentions(StringBuilder out, boolean atCaretOnly) {
         List<IntentionInfo> intentions = getAvailableIntentionsWithRanges(atCaretOnly);
+
+        if (isTimed()) {
+            PsiFile file = getHostFileAtCaret();
+            measureLatency("intentions", null, () -> ReadAction.compute(() -> mySpecTest.getAvailableIntentionsWithRanges(this, getHostEditor(), file, atCaretOnly)));
+        }
         boolean first = true;
         boolean firstFileLevel = true;
 
@@ -254,48 +375,75 @@ public abstract class LightFixtureSpecRenderer<T extends CodeInsightFixtureSpecT
 
     @Override
     public void parse(CharSequence input) {
+        long phaseStart = SpecPhaseTimings.start();
         myDebugLogSettings = new DebugLogSettings();
         SpecTest.DEBUG_LOG_SETTINGS_OPTION.setInstanceData(myDebugLogSettings, myOptions);
-        DebugLogManager logCustomizer = AppUtils.getApplicationComponentOrService(DebugLogManager.class);
-        mySavedCategories = logCustomizer.getSavedCategories();
 
-        logCustomizer.clearCategories(mySavedCategories);
-        logCustomizer.applyCategories(myDebugLogSettings.getLogCategories());
+        if (!myDebugLogSettings.getOptions().isEmpty()) {
+            // NOTE: only loggers whose level changes are reconfigured
+            DebugLogManager logCustomizer = AppUtils.getApplicationComponentOrService(DebugLogManager.class);
+            List<DebugLogManager.Category> savedCategories = logCustomizer.getSavedCategories();
+            List<DebugLogManager.Category> logCategories = myDebugLogSettings.getLogCategories();
+
+            myClearedCategories = DebugLogSettings.difference(savedCategories, logCategories);
+            myAppliedCategories = DebugLogSettings.difference(logCategories, savedCategories);
+
+            if (!myClearedCategories.isEmpty()) logCustomizer.clearCategories(myClearedCategories);
+            if (!myAppliedCategories.isEmpty()) logCustomizer.applyCategories(myAppliedCategories);
+        }
+        SpecPhaseTimings.stop(SpecPhaseTimings.PARSE_LOG, phaseStart);
 
         String testInput = TestUtils.replaceCaretMarkers(input, CodeInsightFixtureSpecTestCase.TEST_CARET_MARKUP.get(myOptions));
 
-        CodeStyleSettings codeStyleSettings = CodeStyleSettingsManager.getInstance(getProject()).getMainProjectCodeStyle();
-        assert codeStyleSettings != null;
+        phaseStart = SpecPhaseTimings.start();
+        if (SpecTest.CODE_STYLE_COPY_ON_WRITE.get(myOptions)) {
+            // NOTE: no temporary settings if no changes, main project settings are used as is
+            CodeStyleSettings pooledSettings = CodeStyleSettingsPool.getSettings(getProject(), myOptions);
+            if (pooledSettings != null) {
+                CodeStyleSettingsManager.getInstance(getProject()).setTemporarySettings(pooledSettings);
+            }
+
+            // NOTE: settings are shared with other examples, changes are detected in finalizeRender() only if checked since
+            //  serializing settings costs as much as the clone which is avoided
+            if (SpecTestProperties.getBoolean(SpecTestProperties.CODE_STYLE_CHECK, false)) {
+                mySharedCodeStyleSettings = pooledSettings != null ? pooledSettings : CodeStyleSettingsManager.getInstance(getProject()).getMainProjectCodeStyle();
+                mySharedCodeStyleState = mySharedCodeStyleSettings == null ? null : CodeStyleSettingsPool.getState(mySharedCodeStyleSettings);
+            }
+        } else {
+            CodeStyleSettings codeStyleSettings = CodeStyleSettingsManager.getInstance(getProject()).getMainProjectCodeStyle();
+            assert codeStyleSettings != null;
 
-        CodeStyleSettings myCodeStyleSettings = codeStyleSettings.clone();
-        SpecTest.CODE_STYLE_SETTINGS_OPTION.setInstanceData(myCodeStyleSettings, myOptions);
-        CodeStyleSettingsManager.getInstance(getProject()).setTemporarySettings(myCodeStyleSettings);
+            CodeStyleSettings myCodeStyleSettings = codeStyleSettings.clone();
+            SpecTest.CODE_STYLE_SETTINGS_OPTION.setInstanceData(myCodeStyleSettings, myOptions);
+            CodeStyleSettingsManager.getInstance(getProject()).setTemporarySettings(myCodeStyleSettings);
+        }
+        SpecPhaseTimings.stop(SpecPhaseTimings.PARSE_CODE_STYLE, phaseStart);
 
         // allow customization of initialization
+        phaseStart = SpecPhaseTimings.start();
         mySpecTest.initializeRenderer(this);
+        SpecPhaseTimings.stop(SpecPhaseTimings.PARSE_INITIALIZE, phaseStart);
 
+        phaseStart = SpecPhaseTimings.start();
         SpecTest.ADDITIONAL_PROJECT_FILES_OPTION.setInstanceData(myAdditionalProjectFiles, myOptions);
 
-        if (!myAdditionalProjectFiles.getFiles().isEmpty()) {
-            // create the files and keep track
-            for (Map.Entry<String, Object> entry : myAdditionalProjectFiles.getFiles().entrySet()) {
-                PsiFile psiFile;
+        // NOTE: without a warm fixture the temp dir is deleted in tearDown() of each example, nothing can be reused
+        if (SpecTest.REUSE_ADDITIONAL_FILES.get(myOptions) && SpecTest.WARM_FIXTURE.get(myOptions)) {
+            myReusedAdditionalFiles = ReusedAdditionalFiles.getInstance(getProject());
+            Map<String, Object> missingFiles = myReusedAdditionalFiles.update(getProject(), myAdditionalProjectFiles, myAdditionalVirtualFiles, this);
+            myReusedAdditionalFiles.retain(createAdditionalFiles(missingFiles));
+        } else {
+            // NOTE: files kept by a previous test would affect results
+            ReusedAdditionalFiles.clear(getProject(), this);
 
-                Object value = entry.getValue();
-                if (value instanceof String) {
-                    psiFile = addFileToProject(entry.getKey(), (String) value);
-                    myAdditionalVirtualFiles.put(entry.getKey(), psiFile.getVirtualFile());
-                    mySpecTest.LOG().debug(String.format("Created additional file %s '%s' %d", entry.getKey(), Utils.escapeJavaString((String) value), psiFile.getModificationStamp()));
-                } else if (value instanceof ResourceLocation) {
-                    // image file
-                    ResourceLocation resourceLocation = (ResourceLocation) value;
-                    VirtualFile imageFile = mySpecTest.createImageFile(resourceLocation.getResourcePath(), resourceLocation.getResourceInputStream());
-                    myAdditionalVirtualFiles.put(entry.getKey(), imageFile);
-                    mySpecTest.LOG().debug(String.format("Created additional image file %s %d", entry.getKey(), imageFile.getModificationStamp()));
-                }
+            if (!myAdditionalProjectFiles.getFiles().isEmpty()) {
+                createAdditionalFiles(myAdditionalProjectFiles.getFiles());
             }
         }
+        SpecPhaseTimings.stop(SpecPhaseTimings.PARSE_ADDITIONAL_FILES, phaseStart);
 
+        phaseStart = SpecPhaseTimings.start();
+        IndexFlushTracker.startExampleFile(getProject());
         String name = getExampleFileName(myExample, myOptions);
         if (name.contains("/")) {
             PsiFile psiFile = addFileToProject(name, testInput);
@@ -312,17 +460,91 @@ public abstract class LightFixtureSpecRenderer<T extends CodeInsightFixtureSpecT
 
         // Allow customizing file data for test
         SpecTestSetup.CUSTOMIZE_FILE_OPTION.setInstanceData(getFile(), myOptions);
+        IndexFlushTracker.endExampleFile(getProject());
+        SpecPhaseTimings.stop(SpecPhaseTimings.PARSE_CONFIGURE, phaseStart);
+    }
+
+    /**
+     * Create additional project files and keep track of them, all files are created in one write action unless
+     * {@link #addFileToProject(String, String)} or {@link CodeInsightFixtureSpecTestCase#createImageFile(String, InputStream)}
+     * are overridden, then files are created one at a time through them
+     *
+     * @param files map of relative path to file text or resource location
+     *
+     * @return map of relative path to created virtual file
+     */
+    @NotNull
+    protected Map<String, VirtualFile> createAdditionalFiles(@NotNull Map<String, Object> files) {
+        Map<String, VirtualFile> created;
+        if (isOverridden(getClass(), LightFixtureSpecRenderer.class, "addFileToProject", String.class, String.class)
+                || isOverridden(mySpecTest.getClass(), CodeInsightFixtureSpecTestCase.class, "createImageFile", String.class, InputStream.class)) {
+            created = new HashMap<>();
+            for (Map.Entry<String, Object> entry : files.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof ResourceLocation) {
+                    ResourceLocation resourceLocation = (ResourceLocation) value;
+                    try (InputStream inputStream = resourceLocation.getResourceInputStream()) {
+                        created.put(entry.getKey(), mySpecTest.createImageFile(resourceLocation.getResourcePath(), inputStream));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Cannot create additional file " + resourceLocation.getResourcePath(), e);
+                    }
+                } else {
+                    String text = AdditionalProjectFiles.getText(value);
+                    if (text != null) created.put(entry.getKey(), addFileToProject(entry.getKey(), text).getVirtualFile());
+                }
+            }
+        } else {
+            created = AdditionalProjectFiles.createFiles(getFixture(), files);
+        }
+
+        if (mySpecTest.LOG().isDebugEnabled()) {
+            for (Map.Entry<String, VirtualFile> entry : created.entrySet()) {
+                String text = AdditionalProjectFiles.getText(files.get(entry.getKey()));
+                if (text != null) {
+                    mySpecTest.LOG().debug(String.format("Created additional file %s '%s' %d", entry.getKey(), Utils.escapeJavaString(text), entry.getValue().getModificationStamp()));
+                } else {
+                    mySpecTest.LOG().debug(String.format("Created additional image file %s %d", entry.getKey(), entry.getValue().getModificationStamp()));
+                }
+            }
+        }
+
+        myAdditionalVirtualFiles.putAll(created);
+        return created;
     }
 
     @Override
     public void finalizeDocument() {
     }
 
+    static boolean isOverridden(@NotNull Class<?> type, @NotNull Class<?> baseType, @NotNull String name, @NotNull Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes).getDeclaringClass() != baseType;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
     @Override
     public void finalizeRender() {
+        long phaseStart = SpecPhaseTimings.start();
+
         // delete additional files
         // QUERY: seems to be not needed
+        if (SpecLeakDetector.isEnabled()) {
+            Editor editor = getEditor();
+            SpecLeakDetector.track(this, editor, getFile(), editor == null ? null : editor.getDocument());
+        }
+
+        if (SpecTest.WARM_FIXTURE.get(myOptions)) {
+            // NOTE: warm fixture is reused only if no temp files are left, example file is deleted with additional files
+            PsiFile file = getFile();
+            VirtualFile exampleFile = file == null ? null : file.getVirtualFile();
+            if (exampleFile != null) myAdditionalVirtualFiles.putIfAbsent(exampleFile.getPath(), exampleFile);
+        }
+
+        long closeStart = SpecPhaseTimings.start();
         mySpecTest.closeOpenFile(this);
+        SpecPhaseTimings.stop(SpecPhaseTimings.CLOSE_OPEN_FILE, closeStart);
 
         EditorHistoryManager historyManager = EditorHistoryManager.getInstance(getProject());
 
@@ -330,6 +552,8 @@ public abstract class LightFixtureSpecRenderer<T extends CodeInsightFixtureSpecT
             WriteCommandAction.runWriteCommandAction(getProject(), () -> {
                 for (Map.Entry<String, VirtualFile> entry : myAdditionalVirtualFiles.entrySet()) {
                     VirtualFile virtualFile = entry.getValue();
+                    if (myReusedAdditionalFiles != null && myReusedAdditionalFiles.isReused(virtualFile)) continue;
+
                     if (virtualFile.isValid()) {
                         try {
                             historyManager.removeFile(virtualFile);
@@ -350,9 +574,23 @@ public abstract class LightFixtureSpecRenderer<T extends CodeInsightFixtureSpecT
         CodeStyleSettings codeStyleSettings = CodeStyleSettingsManager.getInstance(getProject()).getTemporarySettings();
         assert codeStyleSettings == null;
 
-        DebugLogManager logCustomizer = AppUtils.getApplicationComponentOrService(DebugLogManager.class);
-        logCustomizer.clearCategories(myDebugLogSettings.getLogCategories());
-        logCustomizer.applyCategories(mySavedCategories);
+        if (myClearedCategories != null && myAppliedCategories != null) {
+            DebugLogManager logCustomizer = AppUtils.getApplicationComponentOrService(DebugLogManager.class);
+            if (!myAppliedCategories.isEmpty()) logCustomizer.clearCategories(myAppliedCategories);
+            if (!myClearedCategories.isEmpty()) logCustomizer.applyCategories(myClearedCategories);
+            myClearedCategories = null;
+            myAppliedCategories = null;
+        }
+
+        SpecPhaseTimings.stop(SpecPhaseTimings.FINALIZE_RENDER, phaseStart);
+
+        if (mySharedCodeStyleSettings != null && mySharedCodeStyleState != null) {
+            CodeStyleSettings sharedSettings = mySharedCodeStyleSettings;
+            String sharedState = mySharedCodeStyleState;
+            mySharedCodeStyleSettings = null;
+            mySharedCodeStyleState = null;
+            CodeStyleSettingsPool.checkUnchanged(getProject(), sharedSettings, sharedState, getExampleName(myExample));
+        }
     }
 
     // @formatter:off
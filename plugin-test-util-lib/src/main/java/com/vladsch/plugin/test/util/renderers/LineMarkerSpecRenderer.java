@@ -16,7 +16,20 @@
 package com.vladsch.plugin.test.util.renderers;
 
 import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.codeInsight.daemon.GutterIconDescriptor;
+import com.intellij.codeInsight.daemon.LineMarkerInfo;
+import com.intellij.codeInsight.daemon.LineMarkerProvider;
+import com.intellij.codeInsight.daemon.LineMarkerProviderDescriptor;
+import com.intellij.codeInsight.daemon.LineMarkerProviders;
+import com.intellij.codeInsight.daemon.MergeableLineMarkerInfo;
+import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerImpl;
 import com.intellij.codeInsight.daemon.impl.LineMarkerSettingsImpl;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SyntaxTraverser;
 import com.vladsch.flexmark.test.util.TestUtils;
 import com.vladsch.flexmark.test.util.spec.SpecExample;
 import com.vladsch.flexmark.util.misc.Pair;
@@ -29,8 +42,14 @@ import com.vladsch.plugin.test.util.cases.SpecTest;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class LineMarkerSpecRenderer<T extends LightFixtureLineMarkerSpecTest> extends LightFixtureSpecRenderer<T> {
     public LineMarkerSpecRenderer(@NotNull T specTestBase, @NotNull SpecExample example, @Nullable DataHolder options) {
@@ -52,14 +71,20 @@ public class LineMarkerSpecRenderer<T extends LightFixtureLineMarkerSpecTest> ex
         if (!disableOne.isEmpty()) {
             List<String> options = SequenceUtils.splitList(disableOne, ";", 0, SequenceUtils.SPLIT_TRIM_SKIP_EMPTY);
 
+            if (LightFixtureLineMarkerSpecTest.DISABLE_ONE_SINGLE_PASS.get(myOptions)) {
+                return renderDisableOneSinglePass(options);
+            }
+
             for (String option : options) {
                 DataHolder modOptions = TestUtils.getOptions(myExample, "disable-" + option, this::options);
                 updateDisabledLineMarkers(modOptions);
 
                 DaemonCodeAnalyzer.getInstance(getProject()).restart(getFile());
+                getHighlightingSession().invalidate();
 
                 // do comparison of what is there for line markers
                 Pair<String, String> highlighting = mySpecTest.collectAndCheckHighlighting(this, true, false, false, false, false);
+                measureHighlighting("line markers, disabled: " + option);
                 if (html.length() > 0) html.append("\n");
                 CodeInsightFixtureSpecTestCase.appendBanner(html, CodeInsightFixtureSpecTestCase.bannerText("Disabled: " + option));
                 html.append(highlighting.getSecond());
@@ -71,14 +96,183 @@ public class LineMarkerSpecRenderer<T extends LightFixtureLineMarkerSpecTest> ex
 
             // do comparison of what is there for line markers
             Pair<String, String> highlighting = mySpecTest.collectAndCheckHighlighting(this, true, false, false, false, false);
+            measureHighlighting("line markers");
             return highlighting.getSecond();
         }
     }
 
+    @NotNull
+    protected String renderDisableOneSinglePass(@NotNull List<String> options) {
+        LinkedHashMap<String, DataHolder> optionsMap = new LinkedHashMap<>();
+        LinkedHashMap<String, LineMarkerSettings> settingsMap = new LinkedHashMap<>();
+        HashMap<String, Boolean> providers = new HashMap<>();
+
+        for (String option : options) {
+            DataHolder modOptions = TestUtils.getOptions(myExample, "disable-" + option, this::options);
+            LineMarkerSettings markerSettings = SpecTest.LINE_MARKER_SETTINGS_OPTION.setInstanceData(new LineMarkerSettings(), modOptions);
+            optionsMap.put(option, modOptions);
+            settingsMap.put(option, markerSettings);
+
+            // NOTE: providers enabled by any option are enabled for the single pass
+            for (Map.Entry<String, Boolean> entry : markerSettings.getOptionsById().entrySet()) {
+                providers.merge(entry.getKey(), entry.getValue(), Boolean::logicalOr);
+            }
+        }
+
+        updateLineMarkerProviders(providers);
+        DaemonCodeAnalyzer.getInstance(getProject()).restart(getFile());
+        getHighlightingSession().invalidate();
+
+        // removes expected markup from the document, highlighting result may be cached so the daemon is run through the session
+        mySpecTest.collectAndCheckHighlighting(this, true, false, false, false, false);
+        PsiFile hostFile = mySpecTest.getHostFile();
+        Document document = getHostEditor().getDocument();
+        measureHighlighting("line markers");
+        getHighlightingSession().getInfos(document, () -> mySpecTest.doCollectHighlighting(this, hostFile));
+        String highlighted = CodeInsightFixtureSpecTestCase.getActualLineMarkerFileText(document, DaemonCodeAnalyzerImpl.getLineMarkers(document, getProject()), mySpecTest::resolveIconName);
+
+        LinkedHashMap<LineMarkerProvider, List<LineMarkerInfo<?>>> providerMarkers = collectProviderLineMarkers(hostFile);
+        ArrayList<LineMarkerInfo<?>> allMarkers = new ArrayList<>();
+        HashSet<String> providerIds = new HashSet<>();
+        for (Map.Entry<LineMarkerProvider, List<LineMarkerInfo<?>>> entry : providerMarkers.entrySet()) {
+            if (entry.getKey() instanceof LineMarkerProviderDescriptor) providerIds.add(((LineMarkerProviderDescriptor) entry.getKey()).getId());
+            allMarkers.addAll(entry.getValue());
+        }
+
+        // NOTE: markers of providers must be the same as highlighted ones, otherwise the daemon added markers which
+        //  cannot be attributed to a provider, such as those of injected fragments, and each option is highlighted
+        LinkedHashMap<String, String> results = new LinkedHashMap<>();
+        if (highlighted.equals(CodeInsightFixtureSpecTestCase.getActualLineMarkerFileText(document, mergeLineMarkers(allMarkers, document), mySpecTest::resolveIconName))) {
+            for (String option : options) {
+                List<LineMarkerInfo<?>> filtered = filterLineMarkers(providerMarkers, providerIds, settingsMap.get(option).getOptionsById(), providers);
+                if (filtered != null) {
+                    results.put(option, CodeInsightFixtureSpecTestCase.getActualLineMarkerFileText(document, mergeLineMarkers(filtered, document), mySpecTest::resolveIconName));
+                }
+            }
+        }
+
+        boolean verify = LightFixtureLineMarkerSpecTest.DISABLE_ONE_VERIFY.get(myOptions);
+        for (String option : options) {
+            String result = results.get(option);
+            if (result == null || verify) {
+                updateDisabledLineMarkers(optionsMap.get(option));
+                DaemonCodeAnalyzer.getInstance(getProject()).restart(getFile());
+                getHighlightingSession().invalidate();
+
+                String actual = mySpecTest.collectAndCheckHighlighting(this, true, false, false, false, false).getSecond();
+                if (result != null && !result.equals(actual)) {
+                    throw new IllegalStateException("Single pass line markers for 'disable-" + option + "' differ from line markers highlighted with the option.\n" +
+                            "Single pass:\n" + result + "\nHighlighted:\n" + actual);
+                }
+                results.put(option, actual);
+            }
+        }
+
+        for (String option : options) {
+            if (html.length() > 0) html.append("\n");
+            CodeInsightFixtureSpecTestCase.appendBanner(html, CodeInsightFixtureSpecTestCase.bannerText("Disabled: " + option));
+            html.append(results.get(option));
+        }
+
+        return html.toString();
+    }
+
+    /**
+     * Collect line markers of the file by running each enabled line marker provider, as done by the line markers pass
+     *
+     * @param file host file
+     *
+     * @return line markers by provider
+     */
+    @NotNull
+    static LinkedHashMap<LineMarkerProvider, List<LineMarkerInfo<?>>> collectProviderLineMarkers(@NotNull PsiFile file) {
+        LinkedHashMap<LineMarkerProvider, List<LineMarkerInfo<?>>> result = new LinkedHashMap<>();
+        com.intellij.codeInsight.daemon.LineMarkerSettings settings = com.intellij.codeInsight.daemon.LineMarkerSettings.getSettings();
+        DumbService dumbService = DumbService.getInstance(file.getProject());
+
+        ReadAction.run(() -> {
+            for (PsiFile root : file.getViewProvider().getAllFiles()) {
+                List<PsiElement> elements = SyntaxTraverser.psiTraverser(root).toList();
+
+                for (LineMarkerProvider provider : dumbService.filterByDumbAwareness(LineMarkerProviders.getInstance().allForLanguageOrAny(root.getLanguage()))) {
+                    if (provider instanceof LineMarkerProviderDescriptor && !settings.isEnabled((GutterIconDescriptor) provider)) continue;
+
+                    List<LineMarkerInfo<?>> markers = result.computeIfAbsent(provider, key -> new ArrayList<>());
+                    for (PsiElement element : elements) {
+                        LineMarkerInfo<?> info = provider.getLineMarkerInfo(element);
+                        if (info != null) markers.add(info);
+                    }
+                    provider.collectSlowLineMarkers(elements, markers);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Filter out line markers of providers disabled by an option, line marker settings are updated to the option
+     *
+     * @param providerMarkers line markers by provider collected with providers of all options enabled
+     * @param providerIds     ids of providers with line markers
+     * @param optionsById     enabled state by descriptor id of the option
+     * @param allOptionsById  enabled state by descriptor id used for collection
+     *
+     * @return line markers of enabled providers or null if the option changes a descriptor which is not a provider,
+     *         such as a provider option, whose markers cannot be told apart from other markers of the provider
+     */
+    @Nullable
+    static List<LineMarkerInfo<?>> filterLineMarkers(@NotNull Map<LineMarkerProvider, List<LineMarkerInfo<?>>> providerMarkers, @NotNull Set<String> providerIds, @NotNull Map<String, Boolean> optionsById, @NotNull Map<String, Boolean> allOptionsById) {
+        HashSet<String> ids = new HashSet<>(optionsById.keySet());
+        ids.addAll(allOptionsById.keySet());
+        for (String id : ids) {
+            if (!providerIds.contains(id) && !Objects.equals(optionsById.get(id), allOptionsById.get(id))) return null;
+        }
+
+        updateLineMarkerProviders(optionsById);
+        com.intellij.codeInsight.daemon.LineMarkerSettings settings = com.intellij.codeInsight.daemon.LineMarkerSettings.getSettings();
+
+        ArrayList<LineMarkerInfo<?>> filtered = new ArrayList<>();
+        for (Map.Entry<LineMarkerProvider, List<LineMarkerInfo<?>>> entry : providerMarkers.entrySet()) {
+            LineMarkerProvider provider = entry.getKey();
+            if (provider instanceof LineMarkerProviderDescriptor && !settings.isEnabled((GutterIconDescriptor) provider)) continue;
+            filtered.addAll(entry.getValue());
+        }
+        return filtered;
+    }
+
+    /**
+     * Merge mergeable line markers on the same line, as done by the line markers pass
+     *
+     * @param lineMarkers line markers
+     * @param document    document of line markers
+     *
+     * @return merged line markers
+     */
+    @NotNull
+    static List<LineMarkerInfo<?>> mergeLineMarkers(@NotNull List<LineMarkerInfo<?>> lineMarkers, @NotNull Document document) {
+        ArrayList<LineMarkerInfo<?>> result = new ArrayList<>();
+        LinkedHashMap<Integer, List<MergeableLineMarkerInfo<?>>> sameLineMarkers = new LinkedHashMap<>();
+
+        for (LineMarkerInfo<?> lineMarker : lineMarkers) {
+            if (lineMarker instanceof MergeableLineMarkerInfo) {
+                sameLineMarkers.computeIfAbsent(document.getLineNumber(lineMarker.startOffset), key -> new ArrayList<>()).add((MergeableLineMarkerInfo<?>) lineMarker);
+            } else {
+                result.add(lineMarker);
+            }
+        }
+
+        for (List<MergeableLineMarkerInfo<?>> markers : sameLineMarkers.values()) {
+            result.addAll(MergeableLineMarkerInfo.merge(markers));
+        }
+        return result;
+    }
+
     public static void updateDisabledLineMarkers(DataHolder options) {
         LineMarkerSettings markerSettings = SpecTest.LINE_MARKER_SETTINGS_OPTION.setInstanceData(new LineMarkerSettings(), options);
-        Map<String, Boolean> lineMarkerOptions = markerSettings.getOptionsById();
+        updateLineMarkerProviders(markerSettings.getOptionsById());
+    }
 
+    static void updateLineMarkerProviders(@NotNull Map<String, Boolean> lineMarkerOptions) {
         LineMarkerSettingsImpl lineMarkerSettings = (LineMarkerSettingsImpl) com.intellij.codeInsight.daemon.LineMarkerSettings.getSettings();
         lineMarkerSettings.providers.clear();
 
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FullSpecWriterTest {
+    static class FailingWriter extends Writer {
+        final StringWriter myText = new StringWriter();
+        final int myFailingWrite;
+        int myWrites;
+        boolean myClosed;
+
+        FailingWriter(int failingWrite) {
+            myFailingWrite = failingWrite;
+        }
+
+        @Override
+        public void write(@NotNull char[] cbuf, int off, int len) throws IOException {
+            if (++myWrites == myFailingWrite) throw new IOException("write " + myWrites + " failed");
+            myText.write(cbuf, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            myClosed = true;
+        }
+    }
+
+    @Test
+    public void test_firstChunkFails() {
+        FailingWriter actual = new FailingWriter(1);
+        FailingWriter expected = new FailingWriter(0);
+        FullSpecWriter writer = new FullSpecWriter(actual, expected, "actual.md", 10);
+
+        try {
+            writer.write(null, "chunk 1\n", "chunk 1\n");
+            fail("Expected failure of chunk 1");
+        } catch (UncheckedIOException e) {
+            assertEquals("write 1 failed", e.getCause().getMessage());
+        }
+
+        writer.close();
+        assertTrue(actual.myClosed);
+        assertTrue(expected.myClosed);
+    }
+
+    @Test
+    public void test_diffWindows() {
+        FailingWriter actual = new FailingWriter(0);
+        FailingWriter expected = new FailingWriter(0);
+        FullSpecWriter writer = new FullSpecWriter(actual, expected, "actual.md", 10);
+
+        writer.write(null, "chunk 1\n", "chunk 1\n");
+        writer.write(null, "chunk 2 actual\n", "chunk 2\n");
+        writer.write(null, "chunk 3\n", "chunk 3\n");
+        writer.finish();
+
+        assertEquals("chunk 1\nchunk 2 actual\nchunk 3\n", actual.myText.toString());
+        assertEquals("chunk 1\nchunk 2\nchunk 3\n", expected.myText.toString());
+        assertTrue(actual.myClosed);
+        assertTrue(expected.myClosed);
+        assertEquals(1, writer.getDiffCount());
+        assertEquals("<!-- spec text -->\nchunk 2 actual\n", writer.getActualWindows());
+        assertEquals("<!-- spec text -->\nchunk 2\n", writer.getExpectedWindows());
+    }
+
+    @Test
+    public void test_maxWindows() {
+        FullSpecWriter writer = new FullSpecWriter(new FailingWriter(0), new FailingWriter(0), "actual.md", 1);
+
+        writer.write(null, "chunk 1 actual\n", "chunk 1\n");
+        writer.write(null, "chunk 2 actual\n", "chunk 2\n");
+        writer.finish();
+
+        assertEquals(2, writer.getDiffCount());
+        assertEquals("<!-- spec text -->\nchunk 1 actual\n", writer.getActualWindows());
+        assertEquals("<!-- spec text -->\nchunk 1\n", writer.getExpectedWindows());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SpecDiffReportTest {
+    final static String FULL_SPEC = "" +
+            "# Section\n" +
+            "\n" +
+            SpecDiffReport.EXAMPLE_FENCE + " Section: 1\n" +
+            "source 1\n" +
+            ".\n" +
+            "html 1\n" +
+            SpecDiffReport.FENCE + "\n" +
+            "\n" +
+            SpecDiffReport.EXAMPLE_FENCE + "(Section: 2) options(opt)\n" +
+            "source 2\n" +
+            ".\n" +
+            "html 2\n" +
+            SpecDiffReport.FENCE + "\n" +
+            "";
+
+    final static String EXAMPLE = "" +
+            SpecDiffReport.EXAMPLE_FENCE + " Section: 3\n" +
+            "source 3\n" +
+            ".\n" +
+            "html 3\n" +
+            SpecDiffReport.FENCE + "\n" +
+            "";
+
+    @Test
+    public void test_fullSpecLabels() {
+        List<String> lines = TextDiff.lines(FULL_SPEC);
+        assertNull(SpecDiffReport.findExampleLabel(lines, 0));
+        assertEquals("Section: 1", SpecDiffReport.findExampleLabel(lines, 2));
+        assertEquals("Section: 1", SpecDiffReport.findExampleLabel(lines, 5));
+        assertEquals("Section: 1", SpecDiffReport.findExampleLabel(lines, 6));
+        assertNull(SpecDiffReport.findExampleLabel(lines, 7));
+        assertEquals("Section: 2", SpecDiffReport.findExampleLabel(lines, 11));
+        assertNull(SpecDiffReport.findExampleLabel(lines, lines.size()));
+    }
+
+    @Test
+    public void test_exampleLabels() {
+        List<String> lines = TextDiff.lines(EXAMPLE);
+        assertEquals("Section: 3", SpecDiffReport.findExampleLabel(lines, 0));
+        assertEquals("Section: 3", SpecDiffReport.findExampleLabel(lines, 3));
+    }
+
+    @Test
+    public void test_fullSpecFileLine() {
+        // full spec lines are spec file lines, example line is not used
+        assertEquals(0, SpecDiffReport.getFileLine(true, 0, 0));
+        assertEquals(11, SpecDiffReport.getFileLine(true, 0, 11));
+        assertEquals(11, SpecDiffReport.getFileLine(true, 40, 11));
+    }
+
+    @Test
+    public void test_exampleFileLine() {
+        // example text lines are relative to the example line
+        assertEquals(40, SpecDiffReport.getFileLine(false, 40, 0));
+        assertEquals(43, SpecDiffReport.getFileLine(false, 40, 3));
+    }
+
+    @Test
+    public void test_hunkLabelAndLine() {
+        String actual = FULL_SPEC.replace("html 2\n", "html 2 changed\n");
+        List<String> expectedLines = TextDiff.lines(FULL_SPEC);
+        List<TextDiff.Hunk> hunks = TextDiff.diff(expectedLines, TextDiff.lines(actual));
+
+        assertEquals(1, hunks.size());
+        assertEquals(11, hunks.get(0).expectedStart);
+        assertEquals("Section: 2", SpecDiffReport.findExampleLabel(expectedLines, hunks.get(0).expectedStart));
+        assertEquals(11, SpecDiffReport.getFileLine(true, 0, hunks.get(0).expectedStart));
+    }
+}
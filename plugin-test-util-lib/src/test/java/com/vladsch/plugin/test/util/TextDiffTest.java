@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextDiffTest {
+    @NotNull
+    static List<String> lines(@NotNull String... lines) {
+        return Arrays.asList(lines);
+    }
+
+    @NotNull
+    static String hunks(@NotNull List<TextDiff.Hunk> hunks) {
+        StringBuilder sb = new StringBuilder();
+        for (TextDiff.Hunk hunk : hunks) {
+            sb.append(hunk.expectedStart).append(",").append(hunk.expectedEnd).append(" ").append(hunk.actualStart).append(",").append(hunk.actualEnd).append(";");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Replace differing lines of expected by the lines of actual, result must be actual
+     */
+    @NotNull
+    static List<String> apply(@NotNull List<String> expected, @NotNull List<String> actual, @NotNull List<TextDiff.Hunk> hunks) {
+        ArrayList<String> result = new ArrayList<>();
+        int line = 0;
+        for (TextDiff.Hunk hunk : hunks) {
+            assertTrue(hunk.expectedStart >= line);
+            result.addAll(expected.subList(line, hunk.expectedStart));
+            result.addAll(actual.subList(hunk.actualStart, hunk.actualEnd));
+            line = hunk.expectedEnd;
+        }
+        result.addAll(expected.subList(line, expected.size()));
+        return result;
+    }
+
+    @Test
+    public void test_lines() {
+        assertEquals(lines(), TextDiff.lines(""));
+        assertEquals(lines("a\n", "b\n"), TextDiff.lines("a\nb\n"));
+        assertEquals(lines("a\n", "\n", "b"), TextDiff.lines("a\n\nb"));
+    }
+
+    @Test
+    public void test_identical() {
+        assertEquals("", hunks(TextDiff.diff(lines("a", "b", "c"), lines("a", "b", "c"))));
+        assertEquals("", hunks(TextDiff.diff(lines(), lines())));
+    }
+
+    @Test
+    public void test_identicalPrefixSuffix() {
+        assertEquals("2,3 2,3;", hunks(TextDiff.diff(lines("a", "b", "c", "d", "e"), lines("a", "b", "X", "d", "e"))));
+        assertEquals("2,2 2,3;", hunks(TextDiff.diff(lines("a", "b", "d", "e"), lines("a", "b", "c", "d", "e"))));
+        assertEquals("2,3 2,2;", hunks(TextDiff.diff(lines("a", "b", "c", "d", "e"), lines("a", "b", "d", "e"))));
+    }
+
+    @Test
+    public void test_repeatedLines() {
+        // NOTE: common prefix and suffix must not overlap when lines repeat
+        assertEquals("2,2 2,3;", hunks(TextDiff.diff(lines("a", "a"), lines("a", "a", "a"))));
+        assertEquals("2,3 2,2;", hunks(TextDiff.diff(lines("a", "a", "a"), lines("a", "a"))));
+    }
+
+    @Test
+    public void test_insertAtEnds() {
+        assertEquals("0,0 0,1;", hunks(TextDiff.diff(lines("b", "c"), lines("a", "b", "c"))));
+        assertEquals("2,2 2,3;", hunks(TextDiff.diff(lines("a", "b"), lines("a", "b", "c"))));
+        assertEquals("0,0 0,2;", hunks(TextDiff.diff(lines(), lines("a", "b"))));
+    }
+
+    @Test
+    public void test_deleteAtEnds() {
+        assertEquals("0,1 0,0;", hunks(TextDiff.diff(lines("a", "b", "c"), lines("b", "c"))));
+        assertEquals("2,3 2,2;", hunks(TextDiff.diff(lines("a", "b", "c"), lines("a", "b"))));
+        assertEquals("0,2 0,0;", hunks(TextDiff.diff(lines("a", "b"), lines())));
+    }
+
+    @Test
+    public void test_separateHunks() {
+        List<String> expected = lines("a", "b", "c", "d", "e", "f");
+        List<String> actual = lines("a", "X", "c", "d", "Y", "f");
+        List<TextDiff.Hunk> hunks = TextDiff.diff(expected, actual);
+        assertEquals("1,2 1,2;4,5 4,5;", hunks(hunks));
+        assertEquals(actual, apply(expected, actual, hunks));
+    }
+
+    @Test
+    public void test_applyRandom() {
+        Random random = new Random(1);
+        for (int iteration = 0; iteration < 200; iteration++) {
+            List<String> expected = randomLines(random);
+            List<String> actual = randomLines(random);
+            List<TextDiff.Hunk> hunks = TextDiff.diff(expected, actual);
+            assertEquals(actual, apply(expected, actual, hunks));
+        }
+    }
+
+    @NotNull
+    static List<String> randomLines(@NotNull Random random) {
+        ArrayList<String> lines = new ArrayList<>();
+        int iMax = random.nextInt(30);
+        for (int i = 0; i < iMax; i++) {
+            lines.add(String.valueOf((char) ('a' + random.nextInt(4))));
+        }
+        return lines;
+    }
+
+    @Test
+    public void test_maxEditDistance() {
+        int count = TextDiff.MAX_EDIT_DISTANCE;
+        ArrayList<String> expected = new ArrayList<>();
+        ArrayList<String> actual = new ArrayList<>();
+        expected.add("prefix");
+        actual.add("prefix");
+        for (int i = 0; i < count; i++) {
+            expected.add("expected " + i);
+            actual.add("actual " + i);
+        }
+        expected.add("suffix");
+        actual.add("suffix");
+
+        // edit distance 2 * count exceeds the maximum, whole differing range is one hunk
+        List<TextDiff.Hunk> hunks = TextDiff.diff(expected, actual);
+        assertEquals("1," + (count + 1) + " 1," + (count + 1) + ";", hunks(hunks));
+        assertEquals(actual, apply(expected, actual, hunks));
+    }
+
+    @Test
+    public void test_hunkToString() {
+        assertEquals("@@ -3,1 +3,2 @@", new TextDiff.Hunk(2, 3, 2, 4).toString());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015-2019 Vladimir Schneider <vladimir.schneider@gmail.com>, all rights reserved.
+ *
+ * This code is private property of the copyright holder and cannot be used without
+ * having obtained a license or prior written permission of the copyright holder.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package com.vladsch.plugin.test.util;
+
+import com.intellij.testFramework.fixtures.CodeInsightTestFixture;
+import com.vladsch.flexmark.test.util.spec.ResourceLocation;
+import com.vladsch.flexmark.test.util.spec.SpecExample;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.flexmark.util.data.MutableDataSet;
+import com.vladsch.plugin.test.util.cases.CodeInsightFixtureSpecTestCase;
+import com.vladsch.plugin.test.util.cases.LightFixtureActionSpecTest;
+import com.vladsch.plugin.test.util.cases.SpecTest;
+import com.vladsch.plugin.test.util.renderers.ActionSpecRenderer;
+import com.vladsch.plugin.test.util.renderers.LightFixtureSpecRenderer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WarmFixtureSpecTest extends LightPlatformCodeInsightFixtureSpecTestCase implements LightFixtureActionSpecTest {
+    private static final String SPEC_RESOURCE = "/com/vladsch/plugin/test/util/warm_fixture_spec.md";
+    final public static @NotNull ResourceLocation RESOURCE_LOCATION = ResourceLocation.of(WarmFixtureSpecTest.class, SPEC_RESOURCE);
+
+    private static final DataHolder OPTIONS = new MutableDataSet()
+            .set(SpecTest.WARM_FIXTURE, true)
+            .set(SpecTest.EXAMPLE_SOURCE_EXTENSION, ".txt")
+            .set(ACTION_NAME, SKIP_ACTION)
+            .toImmutable();
+
+    private static final ArrayList<CodeInsightTestFixture> ourFixtures = new ArrayList<>();
+
+    public WarmFixtureSpecTest() {
+        super(LightFixtureActionSpecTest.getOptionsMap(), OPTIONS);
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> data() {
+        // NOTE: full spec is not needed to verify fixture reuse
+        ArrayList<Object[]> data = new ArrayList<>();
+        for (Object[] row : CodeInsightFixtureSpecTestCase.getTests(RESOURCE_LOCATION)) {
+            if (!((SpecExample) row[0]).isFullSpecExample()) data.add(row);
+        }
+        return data;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        if (!ourFixtures.isEmpty()) {
+            assertSame(CodeInsightFixtureSpecTestCase.getExampleName(myExample) + " did not get the warm fixture of the first example", ourFixtures.get(0), getFixture());
+        }
+        ourFixtures.add(getFixture());
+    }
+
+    @Override
+    public @NotNull ActionSpecRenderer<?> createExampleSpecRenderer(@NotNull SpecExample example, @Nullable DataHolder options) {
+        return new ActionSpecRenderer<>(this, example, options);
+    }
+
+    @Override
+    public <T extends CodeInsightFixtureSpecTestCase> void initializeRenderer(@NotNull LightFixtureSpecRenderer<T> specRenderer) {
+
+    }
+
+    @Override
+    public <T extends CodeInsightFixtureSpecTestCase> void finalizeRenderer(@NotNull LightFixtureSpecRenderer<T> specRenderer, @NotNull DataHolder specRendererOptions) {
+
+    }
+
+    @Override
+    public <T extends CodeInsightFixtureSpecTestCase> void renderSpecTestAst(@NotNull StringBuilder ast, @NotNull LightFixtureSpecRenderer<T> specRenderer, @NotNull DataHolder specRendererOptions) {
+
+    }
+
+    @Override
+    public <T extends LightFixtureActionSpecTest> void beforeDoTestAction(@NotNull ActionSpecRenderer<T> specRenderer, @NotNull DataHolder specRendererOptions) {
+
+    }
+
+    @Override
+    public <T extends LightFixtureActionSpecTest> void afterDoTestAction(@NotNull ActionSpecRenderer<T> specRenderer, @NotNull DataHolder specRendererOptions) {
+
+    }
+
+    @Override
+    public <T extends LightFixtureActionSpecTest> void renderTesActionHtml(@NotNull StringBuilder html, @NotNull ActionSpecRenderer<T> specRenderer, DataHolder specRendererOptions) {
+
+    }
+}